@@ -46,11 +46,16 @@
 
 package org.scilab.forge.jlatexmath;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * An atom representing another atom with an accent symbol above it.
  */
 public class AccentedAtom extends Atom {
 
+    // number of accented boxes built, to check that a base is not laid out twice
+    private static final AtomicLong boxes = new AtomicLong();
+
     // accent symbol
     private final SymbolAtom accent;
     private boolean acc = false;
@@ -137,13 +142,32 @@ public class AccentedAtom extends Atom {
         }
     }
 
+    /**
+     * @return the number of accented boxes built since the library was loaded
+     */
+    static long getBoxCount() {
+        return boxes.get();
+    }
+
     public Box createBox(TeXEnvironment env) {
+        return createBox(env, createBaseBox(env));
+    }
+
+    /**
+     * @return the box of the base, in cramped style
+     */
+    Box createBaseBox(TeXEnvironment env) {
+        return base == null ? new StrutBox(0, 0, 0, 0) : base.createBox(env.crampStyle());
+    }
+
+    /**
+     * @param b the box of the base created with createBaseBox
+     */
+    Box createBox(TeXEnvironment env, Box b) {
+        boxes.incrementAndGet();
         TeXFont tf = env.getTeXFont();
         int style = env.getStyle();
 
-        // set base in cramped style
-        Box b = (base == null ? new StrutBox(0, 0, 0, 0) : base.createBox(env.crampStyle()));
-
         float u = b.getWidth();
         float s = 0;
         if (underbase instanceof CharSymbol)
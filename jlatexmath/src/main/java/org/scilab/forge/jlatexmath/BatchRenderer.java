@@ -0,0 +1,240 @@
+/* BatchRenderer.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.awt.Color;
+import java.awt.Insets;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Render a list of formulas with an executor.
+ * The identical requests are rendered once and each source is parsed once (and kept in the
+ * {@link TeXFormulaCache}), then the layout and the rasterization of each request are done in
+ * their own task. The layouts of a source are done one at a time since they share their atoms,
+ * the different sources are laid out in parallel.
+ * By default the tasks run in a ForkJoinPool; any ExecutorService can be given, e.g. one
+ * running each task in a virtual thread. A task rejected by the executor (e.g. because it has
+ * been shut down) is run in the calling thread, so the returned futures always complete.
+ */
+public final class BatchRenderer {
+
+    private final ExecutorService executor;
+    private final boolean owner;
+
+    /**
+     * A renderer using a ForkJoinPool with one thread per processor
+     */
+    public BatchRenderer() {
+        this(new ForkJoinPool(), true);
+    }
+
+    /**
+     * @param parallelism the number of threads of the ForkJoinPool
+     */
+    public BatchRenderer(int parallelism) {
+        this(new ForkJoinPool(parallelism), true);
+    }
+
+    /**
+     * @param executor the executor running the tasks, it is not shut down by this renderer
+     */
+    public BatchRenderer(ExecutorService executor) {
+        this(executor, false);
+    }
+
+    private BatchRenderer(ExecutorService executor, boolean owner) {
+        this.executor = executor;
+        this.owner = owner;
+    }
+
+    /**
+     * Render formulas in ARGB images
+     * @param requests the formulas to render
+     * @return the future images, in the order of the requests. The identical requests
+     * share the same future. A formula which can't be parsed gives a future throwing an
+     * ExecutionException caused by the ParseException (or by the error thrown by the parser).
+     */
+    public List<Future<BufferedImage>> render(List<RenderRequest> requests) {
+        return submit(requests, new Step<BufferedImage>() {
+            public BufferedImage run(TeXIcon icon, RenderRequest r) {
+                BufferedImage image = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+                if (r.getBackground() != null) {
+                    Arrays.fill(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), r.getBackground().getRGB());
+                }
+                Rasterizer.paint(icon, image, 0, 0);
+                return image;
+            }
+        });
+    }
+
+    /**
+     * Lay out formulas, e.g. to get their dimensions
+     * @param requests the formulas to lay out
+     * @return the future icons, in the order of the requests
+     */
+    public List<Future<TeXIcon>> layout(List<RenderRequest> requests) {
+        return submit(requests, new Step<TeXIcon>() {
+            public TeXIcon run(TeXIcon icon, RenderRequest r) {
+                return icon;
+            }
+        });
+    }
+
+    /**
+     * Shut down the executor if it has been created by this renderer
+     */
+    public void shutdown() {
+        if (owner) {
+            executor.shutdown();
+        }
+    }
+
+    private <T> List<Future<T>> submit(List<RenderRequest> requests, final Step<T> step) {
+        final Map<RenderRequest, Future<T>> unique = new HashMap<RenderRequest, Future<T>>();
+        final Map<RenderRequest, Source> sources = new LinkedHashMap<RenderRequest, Source>();
+        final List<Future<T>> futures = new ArrayList<Future<T>>(requests.size());
+        for (final RenderRequest r : requests) {
+            Future<T> f = unique.get(r);
+            if (f == null) {
+                // the requests with the same source and context share their parse
+                RenderRequest key = new RenderRequest(r.getLaTeX(), r.getContext(), 0, 0, 0, null, null);
+                Source source = sources.get(key);
+                if (source == null) {
+                    source = new Source(r.getLaTeX(), r.getContext());
+                    sources.put(key, source);
+                }
+                final Source src = source;
+                FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+                    public T call() throws Exception {
+                        TeXFormula formula = new TeXFormula(src.get());
+                        TeXIcon icon = formula.createTeXIcon(r.getStyle(), r.getSize());
+                        icon.setInsets(new Insets(r.getInset(), r.getInset(), r.getInset(), r.getInset()));
+                        icon.setForeground(r.getForeground() == null ? Color.BLACK : r.getForeground());
+                        return step.run(icon, r);
+                    }
+                });
+                source.tasks.add(task);
+                unique.put(r, task);
+                f = task;
+            }
+            futures.add(f);
+        }
+
+        for (Source source : sources.values()) {
+            execute(source);
+        }
+
+        return futures;
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private interface Step<T> {
+        T run(TeXIcon icon, RenderRequest r);
+    }
+
+    /**
+     * Parse a source then run the tasks using it.
+     */
+    private final class Source implements Runnable {
+
+        final String latex;
+        final TeXContext context;
+        final List<FutureTask<?>> tasks = new ArrayList<FutureTask<?>>(1);
+        TeXFormula formula;
+        Throwable error;
+
+        Source(String latex, TeXContext context) {
+            this.latex = latex;
+            this.context = context;
+        }
+
+        public void run() {
+            try {
+                formula = TeXFormulaCache.get(latex, context);
+                // the copies made by the tasks share the atoms: they must be laid out one at a time
+                formula.share();
+            } catch (Throwable e) {
+                // a ParseException, an error in a command or a StackOverflowError on a deeply
+                // nested formula: the tasks must fail, not wait
+                error = e;
+            }
+            for (int i = 1; i < tasks.size(); i++) {
+                execute(tasks.get(i));
+            }
+            tasks.get(0).run();
+        }
+
+        TeXFormula get() throws Exception {
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            if (error != null) {
+                throw (Exception) error;
+            }
+            return formula;
+        }
+    }
+}
@@ -104,13 +104,14 @@ public class BigOperatorAtom extends Atom {
         Box y;
         float delta;
 
+        // the atoms can be shared so they are not modified
         RowAtom bbase = null;
-        Atom Base = base;
+        Atom base = this.base;
         if (base instanceof TypedAtom) {
             Atom at = ((TypedAtom)base).getBase();
             if (at instanceof RowAtom && ((RowAtom)at).lookAtLastAtom && base.type_limits != TeXConstants.SCRIPT_LIMITS) {
-                base = ((RowAtom)at).getLastAtom();
-                bbase = (RowAtom)at;
+                bbase = new RowAtom(at);
+                base = bbase.getLastAtom();
             } else
                 base = at;
         }
@@ -124,11 +125,7 @@ public class BigOperatorAtom extends Atom {
             // superscript
             if (bbase != null) {
                 bbase.add(new ScriptsAtom(base, under, over));
-                Box b = bbase.createBox(env);
-                bbase.getLastAtom();
-                bbase.add(base);
-                base = Base;
-                return b;
+                return bbase.createBox(env);
             }
             return new ScriptsAtom(base, under, over).createBox(env);
         } else {
@@ -202,9 +199,7 @@ public class BigOperatorAtom extends Atom {
 
             if (bbase != null) {
                 HorizontalBox hb = new HorizontalBox(bbase.createBox(env));
-                bbase.add(base);
                 hb.add(vBox);
-                base = Base;
                 return hb;
             }
 
@@ -53,7 +53,8 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Stroke;
 import java.awt.geom.Rectangle2D;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * An abstract graphical representation of a formula, that can be painted. All characters, font
@@ -119,7 +120,7 @@ public abstract class Box {
     /**
      * List of child boxes
      */
-    protected LinkedList<Box> children = new LinkedList<Box>();
+    protected List<Box> children = new ArrayList<Box>();
     protected Box parent;
     protected Box elderParent;
     protected Color markForDEBUG;
@@ -346,4 +347,32 @@ public abstract class Box {
     protected void endDraw(Graphics2D g2) {
         g2.setColor(prevColor);
     }
+
+    /**
+     * Draws this box with a painter (a rasterizer or a display list). The boxes which
+     * don't override this method are drawn with Java2D.
+     *
+     * @param p the painter
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     */
+    void paint(BoxPainter p, float x, float y) {
+        p.fallback(this, x, y);
+    }
+
+    /**
+     * Same as startDraw for a painter.
+     *
+     * @return the previous color
+     */
+    Color startPaint(BoxPainter p, float x, float y) {
+        Color prev = p.getColor();
+        if (background != null) {
+            p.setColor(background);
+            p.fillRect(x, y - height, width, height + depth);
+        }
+        p.setColor(foreground == null ? prev : foreground);
+
+        return prev;
+    }
 }
@@ -0,0 +1,105 @@
+/* BoxPainter.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.awt.Color;
+import java.awt.geom.AffineTransform;
+
+/**
+ * A target for {@link Box#paint}: the boxes which know how to be drawn without Java2D
+ * send their characters and rectangles, the other ones are sent as a whole.
+ */
+abstract class BoxPainter {
+
+    protected Color color;
+
+    Color getColor() {
+        return color;
+    }
+
+    void setColor(Color c) {
+        color = c;
+    }
+
+    /**
+     * Fill a rectangle with the current color
+     */
+    abstract void fillRect(float x, float y, float w, float h);
+
+    /**
+     * Draw a character with the current color
+     * @param fontId the font id
+     * @param c the character
+     * @param scale the scale of the font (1 for a font of size TeXFormula.FONT_SCALE_FACTOR)
+     */
+    abstract void drawChar(int fontId, char c, float scale, float x, float y);
+
+    /**
+     * Draw a box with Java2D
+     */
+    abstract void fallback(Box box, float x, float y);
+
+    /**
+     * @return true if the painter handles save and restore, else the transformed boxes
+     * are drawn with fallback
+     */
+    boolean canTransform() {
+        return false;
+    }
+
+    /**
+     * Concatenate a transform to the current one until the next call to restore.
+     * @param at the transform
+     */
+    void save(AffineTransform at) {
+    }
+
+    /**
+     * Restore the transform changed by the last call to save
+     */
+    void restore() {
+    }
+}
@@ -45,11 +45,15 @@
 
 package org.scilab.forge.jlatexmath;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Stack;
 
 public final class BreakFormula {
 
+    // returned by canBreak when there is no break
+    private static final float NO_BREAK = Float.NaN;
+
     public static Box split(Box box, float width, float interline) {
         if (box instanceof HorizontalBox) {
             return split((HorizontalBox) box, width, interline);
@@ -60,31 +64,37 @@ public final class BreakFormula {
         }
     }
 
+    /*
+     * The lines are cut out of the box without copying the remaining children after each
+     * break: the part not yet put in a line is described by a Level, i.e. a box and the
+     * index of its first remaining child. When a break occurs in a nested box, this child is
+     * itself partially consumed and it is described by the head of the Level.
+     * So each child is visited a bounded number of times and the split is linear.
+     */
     public static Box split(HorizontalBox hbox, float width, float interline) {
-        VerticalBox vbox = new VerticalBox();
-        HorizontalBox first;
-        HorizontalBox second = null;
+        VerticalBox vbox = null;
+        Level level = new Level(hbox);
         Stack<Position> positions = new Stack<Position>();
-        float w = -1;
-        while (hbox.width > width && (w = canBreak(positions, hbox, width)) != hbox.width) {
+        while (level.getWidth() > width && !Float.isNaN(canBreak(positions, level, width))) {
             Position pos = positions.pop();
-            HorizontalBox[] hboxes = pos.hbox.split(pos.index - 1);
-            first = hboxes[0];
-            second = hboxes[1];
+            HorizontalBox first = pos.level.copy(pos.index);
+            Level second = pos.level.remainder(pos.index, null);
             while (!positions.isEmpty()) {
                 pos = positions.pop();
-                hboxes = pos.hbox.splitRemove(pos.index);
-                hboxes[0].add(first);
-                hboxes[1].add(0, second);
-                first = hboxes[0];
-                second = hboxes[1];
+                HorizontalBox hb = pos.level.copy(pos.index + 1);
+                hb.add(first);
+                first = hb;
+                second = pos.level.remainder(pos.index + 1, second);
+            }
+            if (vbox == null) {
+                vbox = new VerticalBox();
             }
             vbox.add(first, interline);
-            hbox = second;
+            level = second;
         }
 
-        if (second != null) {
-            vbox.add(second, interline);
+        if (vbox != null) {
+            vbox.add(level.copy(-1), interline);
             return vbox;
         }
 
@@ -100,65 +110,186 @@ public final class BreakFormula {
         return newBox;
     }
 
-    private static float canBreak(Stack<Position> stack, HorizontalBox hbox, float width) {
-        List<Box> children = hbox.children;
-        float[] cumWidth = new float[children.size() + 1];
+    private static float canBreak(Stack<Position> stack, Level level, float width) {
+        final int size = level.size();
+        float[] cumWidth = new float[Math.min(size, 64) + 1];
         cumWidth[0] = 0;
-        for (int i = 0; i < children.size(); i++) {
-            Box box = children.get(i);
-            cumWidth[i + 1] = cumWidth[i] + box.width;
+        for (int i = 0; i < size; i++) {
+            final Box box = level.get(i);
+            if (i + 1 == cumWidth.length) {
+                cumWidth = Arrays.copyOf(cumWidth, Math.min(size, 2 * i) + 1);
+            }
+            final float boxWidth = level.getWidth(i);
+            cumWidth[i + 1] = cumWidth[i] + boxWidth;
             if (cumWidth[i + 1] > width) {
-                int pos = getBreakPosition(hbox, i);
+                int pos = level.getBreakPosition(i);
                 if (box instanceof HorizontalBox) {
                     Stack<Position> newStack = new Stack<Position>();
-                    float w = canBreak(newStack, (HorizontalBox) box, width - cumWidth[i]);
-                    if (w != box.width && (cumWidth[i] + w <= width || pos == -1)) {
-                        stack.push(new Position(i - 1, hbox));
+                    float w = canBreak(newStack, level.child(i), width - cumWidth[i]);
+                    if (!Float.isNaN(w) && (cumWidth[i] + w <= width || pos == -1)) {
+                        stack.push(new Position(i - 1, level));
                         stack.addAll(newStack);
                         return cumWidth[i] + w;
                     }
                 }
 
-                if (pos != -1) {
-                    stack.push(new Position(pos, hbox));
+                // a break followed by nothing but empty boxes would only add an empty line
+                if (pos != -1 && !level.isEmptyFrom(pos)) {
+                    stack.push(new Position(pos, level));
                     return cumWidth[pos];
                 }
             }
         }
 
-        return hbox.width;
+        return NO_BREAK;
     }
 
-    private static int getBreakPosition(HorizontalBox hb, int i) {
-        if (hb.breakPositions == null) {
-            return -1;
+    /**
+     * The part of a box which has not been put in a line yet: the children of box from
+     * the index start. If head is not null, the child at start is partially consumed and
+     * head describes what remains of it.
+     */
+    private static final class Level {
+
+        final HorizontalBox box;
+        final int start;
+        final Level head;
+        // true if nothing has been removed from the box
+        final boolean whole;
+        // prefix sums of the widths of the children
+        private float[] prefix;
+
+        Level(HorizontalBox box) {
+            this(box, 0, null, true, null);
+        }
+
+        private Level(HorizontalBox box, int start, Level head, boolean whole, float[] prefix) {
+            this.box = box;
+            this.start = start;
+            this.head = head;
+            this.whole = whole;
+            this.prefix = prefix;
+        }
+
+        int size() {
+            return box.children.size() - start;
+        }
+
+        Box get(int i) {
+            return i == 0 && head != null ? head.box : box.children.get(start + i);
+        }
+
+        float getWidth(int i) {
+            return i == 0 && head != null ? head.getWidth() : box.children.get(start + i).width;
+        }
+
+        float getWidth() {
+            if (whole) {
+                return box.width;
+            }
+            final float[] p = getPrefix();
+            final int n = box.children.size();
+            if (head != null) {
+                return head.getWidth() + p[n] - p[start + 1];
+            }
+            return p[n] - p[start];
+        }
+
+        private float[] getPrefix() {
+            if (prefix == null) {
+                final List<Box> children = box.children;
+                prefix = new float[children.size() + 1];
+                for (int i = 0; i < children.size(); i++) {
+                    prefix[i + 1] = prefix[i] + children.get(i).width;
+                }
+            }
+            return prefix;
         }
 
-        if (hb.breakPositions.size() == 1 && hb.breakPositions.get(0) <= i) {
-            return hb.breakPositions.get(0);
+        /**
+         * @return true if the remaining children from i have no width
+         */
+        boolean isEmptyFrom(int i) {
+            final int size = size();
+            for (int j = i; j < size; j++) {
+                if (getWidth(j) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the level describing the i-th child which must be an HorizontalBox
+         */
+        Level child(int i) {
+            if (i == 0 && head != null) {
+                return head;
+            }
+            return new Level((HorizontalBox) box.children.get(start + i));
         }
 
-        int pos = 0;
-        for (; pos < hb.breakPositions.size(); pos++) {
-            if (hb.breakPositions.get(pos) > i) {
-                if (pos == 0) {
-                    return -1;
+        /**
+         * @return the last break position before i (included) or -1
+         */
+        int getBreakPosition(int i) {
+            final List<Integer> bp = box.breakPositions;
+            if (bp == null) {
+                return -1;
+            }
+            // the break positions are sorted
+            final int abs = start + i;
+            int lo = 0, hi = bp.size() - 1, found = -1;
+            while (lo <= hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (bp.get(mid) <= abs) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
                 }
-                return hb.breakPositions.get(pos - 1);
             }
+            if (found == -1) {
+                return -1;
+            }
+            final int pos = bp.get(found) - start;
+            // a break at the first remaining child has already been done
+            return pos > 0 || (whole && pos == 0) ? pos : -1;
+        }
+
+        /**
+         * @return a new box containing the first n remaining children (all if n == -1)
+         */
+        HorizontalBox copy(int n) {
+            final HorizontalBox hb = box.cloneBox();
+            if (n == -1) {
+                n = size();
+            }
+            for (int i = 0; i < n; i++) {
+                hb.add(i == 0 && head != null ? head.copy(-1) : box.children.get(start + i));
+            }
+            return hb;
         }
 
-        return hb.breakPositions.get(pos - 1);
+        /**
+         * @return the level starting at the i-th remaining child, newHead being what remains of it
+         */
+        Level remainder(int i, Level newHead) {
+            if (i == 0 && newHead == null) {
+                return new Level(box, start, head, false, prefix);
+            }
+            return new Level(box, start + i, newHead, false, prefix);
+        }
     }
 
     private static class Position {
 
         int index;
-        HorizontalBox hbox;
+        Level level;
 
-        Position(int index, HorizontalBox hbox) {
+        Position(int index, Level level) {
             this.index = index;
-            this.hbox = hbox;
+            this.level = level;
         }
     }
 }
@@ -101,6 +101,14 @@ public class CharBox extends Box {
         g2.setTransform(at);
     }
 
+    void paint(BoxPainter p, float x, float y) {
+        float scale = 1;
+        if (Math.abs(size - TeXFormula.FONT_SCALE_FACTOR) > TeXFormula.PREC) {
+            scale = size / TeXFormula.FONT_SCALE_FACTOR;
+        }
+        p.drawChar(cf.fontId, cf.c, scale, x, y);
+    }
+
     public int getLastFontId() {
         return cf.fontId;
     }
@@ -0,0 +1,110 @@
+/* CodePointTable.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.util.Map;
+
+/**
+ * A read-only map from code points to strings, stored in a two-level table: the upper bits of
+ * a code point select a page of 256 entries and the pages without any entry are not allocated.
+ * Most of the characters are not mapped, so this is much smaller than an array indexed by
+ * chars, and the supplementary code points can be mapped too.
+ * The tables are never modified: adding entries gives a new table sharing the unchanged pages.
+ */
+final class CodePointTable {
+
+    static final CodePointTable EMPTY = new CodePointTable(new String[0][]);
+
+    private static final int SHIFT = 8;
+    private static final int MASK = (1 << SHIFT) - 1;
+
+    private final String[][] pages;
+
+    private CodePointTable(String[][] pages) {
+        this.pages = pages;
+    }
+
+    /**
+     * @return the string mapped to the code point or null if there is none
+     */
+    String get(int codePoint) {
+        final int page = codePoint >>> SHIFT;
+        if (page < pages.length) {
+            final String[] entries = pages[page];
+            if (entries != null) {
+                return entries[codePoint & MASK];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param entries the entries to add, they replace the ones of this table
+     * @return a table containing the entries of this table and the given ones
+     */
+    CodePointTable with(Map<Integer, String> entries) {
+        if (entries.isEmpty()) {
+            return this;
+        }
+        int length = pages.length;
+        for (Integer cp : entries.keySet()) {
+            length = Math.max(length, (cp.intValue() >>> SHIFT) + 1);
+        }
+        final String[][] copy = new String[length][];
+        System.arraycopy(pages, 0, copy, 0, pages.length);
+        final boolean[] copied = new boolean[length];
+        for (Map.Entry<Integer, String> e : entries.entrySet()) {
+            final int cp = e.getKey().intValue();
+            final int page = cp >>> SHIFT;
+            if (!copied[page]) {
+                copy[page] = copy[page] == null ? new String[MASK + 1] : copy[page].clone();
+                copied[page] = true;
+            }
+            copy[page][cp & MASK] = e.getValue();
+        }
+        return new CodePointTable(copy);
+    }
+}
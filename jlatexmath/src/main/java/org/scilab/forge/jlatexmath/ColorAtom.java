@@ -47,16 +47,16 @@
 package org.scilab.forge.jlatexmath;
 
 import java.awt.Color;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An atom representing the foreground and background color of an other atom.
  */
 public class ColorAtom extends Atom implements Row {
 
-    public static Map<String,Color> Colors = new HashMap<String,Color>();
+    public static Map<String,Color> Colors = new ConcurrentHashMap<String,Color>();
 
     // background color
     private final Color background;
@@ -123,6 +123,13 @@ public class ColorAtom extends Atom implements Row {
     }
 
     public static Color getColor(String s) {
+        return getColor(s, TeXContext.getDefault());
+    }
+
+    /**
+     * Get the color corresponding to the string s, the named colors are looked up in the given context
+     */
+    public static Color getColor(String s, TeXContext context) {
         if (s != null) {
             s = s.trim();
             if (s.length() >= 1) {
@@ -176,7 +183,7 @@ public class ColorAtom extends Atom implements Row {
                     }
                 }
 
-                Color c = Colors.get(s.toLowerCase());
+                Color c = context.getColor(s.toLowerCase());
                 if (c != null) {
                     return c;
                 } else {
@@ -50,10 +50,12 @@ import java.awt.Font;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The default implementation of the TeXFont-interface. All font information is read
@@ -75,7 +77,7 @@ public class DefaultTeXFont implements TeXFont {
 
     private static Map<String, CharFont[]> textStyleMappings;
     private static Map<String, CharFont> symbolMappings;
-    private static FontInfo[] fontInfo = new FontInfo[0];
+    private static volatile FontInfo[] fontInfo = new FontInfo[0];
     private static Map<String, Float> parameters;
     private static Map<String, Number> generalSettings;
 
@@ -85,8 +87,12 @@ public class DefaultTeXFont implements TeXFont {
 
     protected static final int WIDTH = 0, HEIGHT = 1, DEPTH = 2, IT = 3;
 
-    public static List<Character.UnicodeBlock> loadedAlphabets = new ArrayList<Character.UnicodeBlock>();
-    public static Map<Character.UnicodeBlock, AlphabetRegistration> registeredAlphabets = new HashMap<Character.UnicodeBlock, AlphabetRegistration>();
+    public static List<Character.UnicodeBlock> loadedAlphabets = new CopyOnWriteArrayList<Character.UnicodeBlock>();
+    public static Map<Character.UnicodeBlock, AlphabetRegistration> registeredAlphabets = Collections.synchronizedMap(new HashMap<Character.UnicodeBlock, AlphabetRegistration>());
+
+    private static final String[] BUNDLED_ALPHABETS = {"org.scilab.forge.jlatexmath.cyrillic.CyrillicRegistration",
+                                                       "org.scilab.forge.jlatexmath.greek.GreekRegistration"};
+    private static volatile boolean bundledAlphabetsRegistered;
 
     protected float factor = 1f;
 
@@ -97,6 +103,7 @@ public class DefaultTeXFont implements TeXFont {
     public boolean isIt = false;
 
     static {
+        final long start = System.nanoTime();
         DefaultTeXFontParser parser = new DefaultTeXFontParser();
         //load LATIN block
         loadedAlphabets.add(Character.UnicodeBlock.of('a'));
@@ -105,11 +112,11 @@ public class DefaultTeXFont implements TeXFont {
         // general font parameters
         parameters = parser.parseParameters();
         // text style mappings
-        textStyleMappings = parser.parseTextStyleMappings();
+        textStyleMappings = new ConcurrentHashMap<String, CharFont[]>(parser.parseTextStyleMappings());
         // default text style : style mappings
         defaultTextStyleMappings = parser.parseDefaultTextStyleMappings();
         // symbol mappings
-        symbolMappings = parser.parseSymbolMappings();
+        symbolMappings = new ConcurrentHashMap<String, CharFont>(parser.parseSymbolMappings());
         // general settings
         generalSettings = parser.parseGeneralSettings();
         generalSettings.put("textfactor", 1);
@@ -122,6 +129,7 @@ public class DefaultTeXFont implements TeXFont {
                 DefaultTeXFontParser.GEN_SET_EL,
                 DefaultTeXFontParser.MUFONTID_ATTR,
                 "contains an unknown font id!");
+        Startup.record("DefaultTeXFont", start);
     }
 
     private final float size; // standard size
@@ -130,6 +138,14 @@ public class DefaultTeXFont implements TeXFont {
         size = pointSize;
     }
 
+    /**
+     * Make sure that the class is initialized: the font descriptions and the
+     * symbol mappings are read and the fonts are registered in FontInfo.
+     */
+    static void ensureLoaded() {
+        // nothing to do: calling this method initializes the class
+    }
+
     public DefaultTeXFont(float pointSize, boolean b, boolean rm, boolean ss, boolean tt, boolean it) {
         this(pointSize, 1, b, rm, ss, tt, it);
     }
@@ -144,7 +160,7 @@ public class DefaultTeXFont implements TeXFont {
         isIt = it;
     }
 
-    public static void addTeXFontDescription(String file) throws ResourceParseException {
+    public static synchronized void addTeXFontDescription(String file) throws ResourceParseException {
         FileInputStream in;
         try {
             in = new FileInputStream(file);
@@ -154,14 +170,14 @@ public class DefaultTeXFont implements TeXFont {
         addTeXFontDescription(in, file);
     }
 
-    public static void addTeXFontDescription(InputStream in, String name) throws ResourceParseException {
+    public static synchronized void addTeXFontDescription(InputStream in, String name) throws ResourceParseException {
         DefaultTeXFontParser dtfp = new DefaultTeXFontParser(in, name);
         fontInfo = dtfp.parseFontDescriptions(fontInfo);
         textStyleMappings.putAll(dtfp.parseTextStyleMappings());
         symbolMappings.putAll(dtfp.parseSymbolMappings());
     }
 
-    public static void addTeXFontDescription(Object base, InputStream in, String name) throws ResourceParseException {
+    public static synchronized void addTeXFontDescription(Object base, InputStream in, String name) throws ResourceParseException {
         DefaultTeXFontParser dtfp = new DefaultTeXFontParser(base, in, name);
         fontInfo = dtfp.parseFontDescriptions(fontInfo);
         dtfp.parseExtraPath();
@@ -169,7 +185,7 @@ public class DefaultTeXFont implements TeXFont {
         symbolMappings.putAll(dtfp.parseSymbolMappings());
     }
 
-    public static void addAlphabet(Character.UnicodeBlock alphabet, InputStream inlanguage, String language, InputStream insymbols, String symbols, InputStream inmappings, String mappings) throws ResourceParseException {
+    public static synchronized void addAlphabet(Character.UnicodeBlock alphabet, InputStream inlanguage, String language, InputStream insymbols, String symbols, InputStream inmappings, String mappings) throws ResourceParseException {
         if (!loadedAlphabets.contains(alphabet)) {
             addTeXFontDescription(inlanguage, language);
             SymbolAtom.addSymbolAtom(insymbols, symbols);
@@ -178,18 +194,22 @@ public class DefaultTeXFont implements TeXFont {
         }
     }
 
-    public static void addAlphabet(Object base, Character.UnicodeBlock[] alphabet, String language) throws ResourceParseException {
+    public static synchronized void addAlphabet(Object base, Character.UnicodeBlock[] alphabet, String language) throws ResourceParseException {
         boolean b = false;
         for (int i = 0; !b && i < alphabet.length; i++) {
             b = loadedAlphabets.contains(alphabet[i]) || b;
         }
         if (!b) {
-            TeXParser.isLoading = true;
-            addTeXFontDescription(base, base.getClass().getResourceAsStream(language), language);
-            for (int i = 0; i < alphabet.length; i++) {
-                loadedAlphabets.add(alphabet[i]);
+            TeXParser.isLoading.set(Boolean.TRUE);
+            try {
+                addTeXFontDescription(base, base.getClass().getResourceAsStream(language), language);
+                for (int i = 0; i < alphabet.length; i++) {
+                    loadedAlphabets.add(alphabet[i]);
+                }
+                TeXContext.changed();
+            } finally {
+                TeXParser.isLoading.set(Boolean.FALSE);
             }
-            TeXParser.isLoading = false;
         }
     }
 
@@ -214,11 +234,42 @@ public class DefaultTeXFont implements TeXFont {
         }
     }
 
+    /**
+     * Get the registration of the alphabet containing the given block. The alphabets coming
+     * with the library are registered on the first call, so that the formulas using only
+     * Latin characters never load them.
+     */
+    static AlphabetRegistration getRegisteredAlphabet(Character.UnicodeBlock block) {
+        if (!bundledAlphabetsRegistered) {
+            registerBundledAlphabets();
+        }
+        return registeredAlphabets.get(block);
+    }
+
+    private static synchronized void registerBundledAlphabets() {
+        if (!bundledAlphabetsRegistered) {
+            for (String name : BUNDLED_ALPHABETS) {
+                try {
+                    AlphabetRegistration reg = (AlphabetRegistration) Class.forName(name).newInstance();
+                    Character.UnicodeBlock[] blocks = reg.getUnicodeBlock();
+                    for (int i = 0; i < blocks.length; i++) {
+                        // an alphabet registered by the user is kept
+                        if (!registeredAlphabets.containsKey(blocks[i])) {
+                            registeredAlphabets.put(blocks[i], reg);
+                        }
+                    }
+                } catch (Exception e) { }
+            }
+            bundledAlphabetsRegistered = true;
+        }
+    }
+
     public static void registerAlphabet(AlphabetRegistration reg) {
         Character.UnicodeBlock[] blocks = reg.getUnicodeBlock();
         for (int i = 0; i < blocks.length; i++) {
             registeredAlphabets.put(blocks[i], reg);
         }
+        TeXContext.changed();
     }
 
     public TeXFont copy() {
@@ -281,7 +332,7 @@ public class DefaultTeXFont implements TeXFont {
         if (cf[kind] == null)
             return getDefaultChar(c, style);
         else
-            return getChar(new CharFont((char) (cf[kind].c + offset), cf[kind].fontId), style);
+            return getChar((char) (cf[kind].c + offset), cf[kind].fontId, cf[kind].fontId, style);
     }
 
     public Char getChar(char c, String textStyle, int style) throws TextStyleMappingNotFoundException {
@@ -293,36 +344,45 @@ public class DefaultTeXFont implements TeXFont {
     }
 
     public Char getChar(CharFont cf, int style) {
+        return getChar(cf.c, cf.fontId, cf.boldFontId, style);
+    }
+
+    private Char getChar(char c, int fontId, int boldFontId, int style) {
         float fsize = getSizeFactor(style);
-        int id = isBold ? cf.boldFontId : cf.fontId;
+        int id = isBold ? boldFontId : fontId;
+        // the font where the metrics are read
+        int metricsId = fontId;
         FontInfo info = fontInfo[id];
-        if (isBold && cf.fontId == cf.boldFontId) {
+        if (isBold && fontId == boldFontId) {
             id = info.getBoldId();
             info = fontInfo[id];
-            cf = new CharFont(cf.c, id, style);
+            metricsId = id;
         }
         if (isRoman) {
             id = info.getRomanId();
             info = fontInfo[id];
-            cf = new CharFont(cf.c, id, style);
+            metricsId = id;
         }
         if (isSs) {
             id = info.getSsId();
             info = fontInfo[id];
-            cf = new CharFont(cf.c, id, style);
+            metricsId = id;
         }
         if (isTt) {
             id = info.getTtId();
             info = fontInfo[id];
-            cf = new CharFont(cf.c, id, style);
+            metricsId = id;
         }
         if (isIt) {
             id = info.getItId();
             info = fontInfo[id];
-            cf = new CharFont(cf.c, id, style);
+            metricsId = id;
+        }
+        if (metricsId == id) {
+            return info.getChar(c, factor * fsize);
         }
         Font font = info.getFont();
-        return new Char(cf.c, font, id, getMetrics(cf, factor * fsize));
+        return new Char(c, font, id, getMetrics(new CharFont(c, metricsId), factor * fsize));
     }
 
     public Char getChar(String symbolName, int style) throws SymbolMappingNotFoundException {
@@ -359,7 +419,6 @@ public class DefaultTeXFont implements TeXFont {
     }
 
     public Extension getExtension(Char c, int style) {
-        Font f = c.getFont();
         int fc = c.getFontCode();
         float s = getSizeFactor(style);
 
@@ -371,7 +430,7 @@ public class DefaultTeXFont implements TeXFont {
             if (ext[i] == NONE) {
                 parts[i] = null;
             } else {
-                parts[i] = new Char((char) ext[i], f, fc, getMetrics(new CharFont((char) ext[i], fc), s));
+                parts[i] = info.getChar((char) ext[i], s);
             }
         }
 
@@ -409,8 +468,7 @@ public class DefaultTeXFont implements TeXFont {
     public Char getNextLarger(Char c, int style) {
         FontInfo info = fontInfo[c.getFontCode()];
         CharFont ch = info.getNextLarger(c.getChar());
-        FontInfo newInfo = fontInfo[ch.fontId];
-        return new Char(ch.c, newInfo.getFont(), ch.fontId, getMetrics(ch, getSizeFactor(style)));
+        return fontInfo[ch.fontId].getChar(ch.c, getSizeFactor(style));
     }
 
     public float getNum1(int style) {
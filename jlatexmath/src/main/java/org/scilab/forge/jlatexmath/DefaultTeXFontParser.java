@@ -53,9 +53,11 @@ import java.awt.GraphicsEnvironment;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -171,6 +173,7 @@ public class DefaultTeXFontParser {
     private Map<String,CharFont[]> parsedTextStyles;
 
     private Element root;
+    private Snapshot snapshot;
     private Object base = null;
 
     static {
@@ -181,7 +184,23 @@ public class DefaultTeXFontParser {
     }
 
     public DefaultTeXFontParser() throws ResourceParseException {
-        this(DefaultTeXFontParser.class.getResourceAsStream(RESOURCE_NAME), RESOURCE_NAME);
+        factory.setIgnoringElementContentWhitespace(true);
+        factory.setIgnoringComments(true);
+        snapshot = Snapshot.get();
+        if (snapshot == null) {
+            root = Startup.getDocument(RESOURCE_NAME);
+        }
+    }
+
+    /**
+     * @return the root of the resource, it is only parsed when there is no snapshot or when
+     *         a table cannot be read from it
+     */
+    private Element getRoot() throws ResourceParseException {
+        if (root == null) {
+            root = Startup.getDocument(RESOURCE_NAME);
+        }
+        return root;
     }
 
     public DefaultTeXFontParser(InputStream file, String name) throws ResourceParseException {
@@ -216,7 +235,6 @@ public class DefaultTeXFontParser {
         if (file == null) {
             return fi;
         }
-        ArrayList<FontInfo> res = new ArrayList<FontInfo>(Arrays.asList(fi));
         Element font;
         try {
             font = factory.newDocumentBuilder().parse(file).getDocumentElement();
@@ -276,7 +294,21 @@ public class DefaultTeXFontParser {
         for (int j = 0; j < listF.getLength(); j++)
             processCharElement((Element) listF.item(j), info);
 
-        // parsing OK, add to table
+        return addFontInfo(fi, info);
+    }
+
+    /**
+     * Read a font description from the precompiled metrics bundle
+     * @param fi the already loaded fonts
+     * @param buf the record of the font in the bundle
+     * @param name the name of the XML file the record was built from
+     */
+    FontInfo[] parseFontDescriptions(FontInfo[] fi, ByteBuffer buf, String name) throws ResourceParseException {
+        return addFontInfo(fi, FontMetricsBundle.readFontInfo(buf, base, name));
+    }
+
+    private FontInfo[] addFontInfo(FontInfo[] fi, FontInfo info) throws ResourceParseException {
+        ArrayList<FontInfo> res = new ArrayList<FontInfo>(Arrays.asList(fi));
         res.add(info);
 
         for (int i = 0; i < res.size(); i++) {
@@ -293,30 +325,57 @@ public class DefaultTeXFontParser {
     }
 
     public FontInfo[] parseFontDescriptions(FontInfo[] fi) throws ResourceParseException {
-        Element fontDescriptions = (Element)root.getElementsByTagName("FontDescriptions").item(0);
+        // the metrics of the default fonts are precompiled at build time, the XML
+        // files are only read for the alphabets added by the user
+        FontMetricsBundle bundle = base == null ? FontMetricsBundle.getDefault() : null;
+        for (String include : getMetricsIncludes()) {
+            FontInfo[] read = null;
+            if (bundle != null) {
+                try {
+                    ByteBuffer buf = bundle.get(include);
+                    if (buf != null) {
+                        read = parseFontDescriptions(fi, buf, include);
+                    }
+                } catch (RuntimeException e) {
+                    // damaged record, the XML file is read
+                }
+            }
+            if (read != null) {
+                fi = read;
+            } else if (base == null) {
+                fi = parseFontDescriptions(fi, DefaultTeXFontParser.class.getResourceAsStream(include), include);
+            } else {
+                fi = parseFontDescriptions(fi, base.getClass().getResourceAsStream(include), include);
+            }
+        }
+        return fi;
+    }
+
+    List<String> getMetricsIncludes() throws ResourceParseException {
+        List<String> fromSnapshot = snapshot == null ? null : snapshot.readMetricsIncludes();
+        if (fromSnapshot != null) {
+            return fromSnapshot;
+        }
+        List<String> includes = new ArrayList<String>();
+        Element fontDescriptions = (Element)getRoot().getElementsByTagName("FontDescriptions").item(0);
         if (fontDescriptions != null) { // element present
             NodeList list = fontDescriptions.getElementsByTagName("Metrics");
             for (int i = 0; i < list.getLength(); i++) {
                 // get required string attribute
-                String include = getAttrValueAndCheckIfNotNull("include", (Element)list.item(i));
-                if (base == null) {
-                    fi = parseFontDescriptions(fi, DefaultTeXFontParser.class.getResourceAsStream(include), include);
-                } else {
-                    fi = parseFontDescriptions(fi, base.getClass().getResourceAsStream(include), include);
-                }
+                includes.add(getAttrValueAndCheckIfNotNull("include", (Element)list.item(i)));
             }
         }
-        return fi;
+        return includes;
     }
 
     protected void parseExtraPath() throws ResourceParseException {
-        Element syms = (Element)root.getElementsByTagName("TeXSymbols").item(0);
+        Element syms = (Element)getRoot().getElementsByTagName("TeXSymbols").item(0);
         if (syms != null) { // element present
             // get required string attribute
             String include = getAttrValueAndCheckIfNotNull("include", syms);
             SymbolAtom.addSymbolAtom(base.getClass().getResourceAsStream(include), include);
         }
-        Element settings = (Element)root.getElementsByTagName("FormulaSettings").item(0);
+        Element settings = (Element)getRoot().getElementsByTagName("FormulaSettings").item(0);
         if (settings != null) { // element present
             // get required string attribute
             String include = getAttrValueAndCheckIfNotNull("include", settings);
@@ -401,9 +460,28 @@ public class DefaultTeXFontParser {
         }
     }
 
+    /**
+     * @return the files containing the symbol mappings
+     */
+    List<String> getSymbolMappingIncludes() throws ResourceParseException {
+        List<String> includes = new ArrayList<String>();
+        Element symbolMappings = (Element)getRoot().getElementsByTagName("SymbolMappings").item(0);
+        if (symbolMappings != null) { // element present
+            NodeList list = symbolMappings.getElementsByTagName("Mapping");
+            for (int i = 0; i < list.getLength(); i++) {
+                includes.add(getAttrValueAndCheckIfNotNull("include", (Element)list.item(i)));
+            }
+        }
+        return includes;
+    }
+
     public Map<String,CharFont> parseSymbolMappings() throws ResourceParseException {
+        Map<String,CharFont> fromSnapshot = snapshot == null ? null : snapshot.readFontSymbolMappings();
+        if (fromSnapshot != null) {
+            return fromSnapshot;
+        }
         Map<String,CharFont> res = new HashMap<String,CharFont>();
-        Element symbolMappings = (Element)root.getElementsByTagName("SymbolMappings").item(0);
+        Element symbolMappings = (Element)getRoot().getElementsByTagName("SymbolMappings").item(0);
         if (symbolMappings == null)
             // "SymbolMappings" is required!
             throw new XMLResourceParseException(RESOURCE_NAME, "SymbolMappings");
@@ -450,8 +528,13 @@ public class DefaultTeXFontParser {
 
     public String[] parseDefaultTextStyleMappings()
     throws ResourceParseException {
+        String[] fromSnapshot = snapshot == null ? null : snapshot.readDefaultTextStyleMappings();
+        if (fromSnapshot != null) {
+            return fromSnapshot;
+        }
+        Map<String,CharFont[]> parsedTextStyles = parseTextStyleMappings();
         String[] res = new String[4];
-        Element defaultTextStyleMappings = (Element)root
+        Element defaultTextStyleMappings = (Element)getRoot()
                                            .getElementsByTagName("DefaultTextStyleMapping").item(0);
         if (defaultTextStyleMappings == null)
             return res;
@@ -492,8 +575,12 @@ public class DefaultTeXFontParser {
     }
 
     public Map<String,Float> parseParameters() throws ResourceParseException {
+        Map<String,Float> fromSnapshot = snapshot == null ? null : snapshot.readParameters();
+        if (fromSnapshot != null) {
+            return fromSnapshot;
+        }
         Map<String,Float> res = new HashMap<String,Float>();
-        Element parameters = (Element)root.getElementsByTagName("Parameters").item(0);
+        Element parameters = (Element)getRoot().getElementsByTagName("Parameters").item(0);
         if (parameters == null)
             // "Parameters" is required!
             throw new XMLResourceParseException(RESOURCE_NAME, "Parameters");
@@ -510,9 +597,13 @@ public class DefaultTeXFontParser {
     }
 
     public Map<String,Number> parseGeneralSettings() throws ResourceParseException {
+        Map<String,Number> fromSnapshot = snapshot == null ? null : snapshot.readGeneralSettings();
+        if (fromSnapshot != null) {
+            return fromSnapshot;
+        }
         Map <String,Number>res = new HashMap<String,Number>();
         // TODO: must this be 'Number' ?
-        Element generalSettings = (Element)root.getElementsByTagName("GeneralSettings").item(0);
+        Element generalSettings = (Element)getRoot().getElementsByTagName("GeneralSettings").item(0);
         if (generalSettings == null)
             // "GeneralSettings" is required!
             throw new XMLResourceParseException(RESOURCE_NAME, "GeneralSettings");
@@ -530,13 +621,21 @@ public class DefaultTeXFontParser {
         return res;
     }
 
-    public Map<String,CharFont[]> parseTextStyleMappings() {
+    public Map<String,CharFont[]> parseTextStyleMappings() throws ResourceParseException {
+        // they are parsed with the font descriptions, except when a snapshot is written
+        if (parsedTextStyles == null) {
+            parsedTextStyles = parseStyleMappings();
+        }
         return parsedTextStyles;
     }
 
     private Map<String,CharFont[]> parseStyleMappings() throws ResourceParseException {
+        Map<String,CharFont[]> fromSnapshot = snapshot == null ? null : snapshot.readTextStyleMappings();
+        if (fromSnapshot != null) {
+            return fromSnapshot;
+        }
         Map<String,CharFont[]> res = new HashMap<String,CharFont[]>();
-        Element textStyleMappings = (Element)root.getElementsByTagName("TextStyleMappings").item(0);
+        Element textStyleMappings = (Element)getRoot().getElementsByTagName("TextStyleMappings").item(0);
         if (textStyleMappings == null)
             return res;
         else { // element present
@@ -584,7 +683,7 @@ public class DefaultTeXFontParser {
         rangeTypeMappings.put("unicode", DefaultTeXFont.UNICODE); // autoboxing
     }
 
-    private static String getAttrValueAndCheckIfNotNull(String attrName,
+    static String getAttrValueAndCheckIfNotNull(String attrName,
             Element element) throws ResourceParseException {
         String attrValue = element.getAttribute(attrName);
         if (attrValue.equals(""))
@@ -0,0 +1,281 @@
+/* DisplayList.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * A box tree flattened into a list of glyph runs, rectangles and boxes drawn with Java2D
+ * (images, rotated boxes, ...). The list is recorded once relative to the origin of the box
+ * and replayed at any position each time the icon is painted: the consecutive characters of
+ * a run share their font, scale and color and are drawn with one GlyphVector.
+ * The colors which are not set in the formula are null: the color of the graphics is used.
+ * The list can be replayed by several threads at the same time.
+ */
+final class DisplayList extends BoxPainter {
+
+    private static final byte GLYPHS = 0;
+    private static final byte RECT = 1;
+    private static final byte BOX = 2;
+
+    private final Box box;
+
+    // the operations: their kind, color and index in the table of their kind
+    private byte[] kinds = new byte[16];
+    private Color[] colors = new Color[16];
+    private int[] indices = new int[16];
+    private int nops;
+
+    // the glyph runs, their glyphs are in chars, xs and ys from runStart to runStart + runCount
+    private int[] runFont = new int[8];
+    private float[] runScale = new float[8];
+    private int[] runStart = new int[8];
+    private int[] runCount = new int[8];
+    private int nruns;
+    private char[] chars = new char[32];
+    private float[] xs = new float[32];
+    private float[] ys = new float[32];
+    private int nglyphs;
+
+    // x, y, width and height of the rectangles
+    private float[] rects = new float[16];
+    private int nrects;
+
+    // the boxes and their positions
+    private Box[] boxes = new Box[4];
+    private float[] boxPos = new float[8];
+    private int nboxes;
+
+    // the glyph vectors of the runs and their contexts, guarded by vectors
+    private final GlyphVector[] vectors;
+    private final FontRenderContext[] vectorFrcs;
+
+    /**
+     * Record a box with its left end and its baseline at the origin
+     * @param box the box
+     */
+    DisplayList(Box box) {
+        this.box = box;
+        box.paint(this, 0, 0);
+
+        kinds = Arrays.copyOf(kinds, nops);
+        colors = Arrays.copyOf(colors, nops);
+        indices = Arrays.copyOf(indices, nops);
+        runFont = Arrays.copyOf(runFont, nruns);
+        runScale = Arrays.copyOf(runScale, nruns);
+        runStart = Arrays.copyOf(runStart, nruns);
+        runCount = Arrays.copyOf(runCount, nruns);
+        chars = Arrays.copyOf(chars, nglyphs);
+        xs = Arrays.copyOf(xs, nglyphs);
+        ys = Arrays.copyOf(ys, nglyphs);
+        rects = Arrays.copyOf(rects, 4 * nrects);
+        boxes = Arrays.copyOf(boxes, nboxes);
+        boxPos = Arrays.copyOf(boxPos, 2 * nboxes);
+        vectors = new GlyphVector[nruns];
+        vectorFrcs = new FontRenderContext[nruns];
+    }
+
+    /**
+     * @return true if this list has been recorded for this box
+     */
+    boolean isFor(Box box) {
+        return this.box == box;
+    }
+
+    /**
+     * Replay the list
+     * @param g2 the graphics, its color is used for the parts without color
+     * @param x the x-coordinate of the box
+     * @param y the y-coordinate of the baseline
+     */
+    void draw(Graphics2D g2, float x, float y) {
+        AffineTransform at = g2.getTransform();
+        g2.translate(x, y);
+        Color base = g2.getColor();
+        Color current = base;
+        Rectangle2D.Float rect = null;
+        for (int i = 0; i < nops; i++) {
+            Color c = colors[i] == null ? base : colors[i];
+            if (c != current) {
+                g2.setColor(c);
+                current = c;
+            }
+            int k = indices[i];
+            switch (kinds[i]) {
+            case GLYPHS :
+                drawRun(g2, k);
+                break;
+            case RECT :
+                if (rect == null) {
+                    rect = new Rectangle2D.Float();
+                }
+                rect.setRect(rects[4 * k], rects[4 * k + 1], rects[4 * k + 2], rects[4 * k + 3]);
+                g2.fill(rect);
+                break;
+            default :
+                boxes[k].draw(g2, boxPos[2 * k], boxPos[2 * k + 1]);
+                current = g2.getColor();
+            }
+        }
+        g2.setColor(base);
+        g2.setTransform(at);
+    }
+
+    private void drawRun(Graphics2D g2, int run) {
+        AffineTransform at = g2.getTransform();
+        int first = runStart[run];
+        float scale = runScale[run];
+        g2.translate(xs[first], ys[first]);
+        if (scale != 1) {
+            g2.scale(scale, scale);
+        }
+
+        Font font = FontInfo.getFont(runFont[run]);
+        if (g2.getFont() != font) {
+            g2.setFont(font);
+        }
+
+        if (runCount[run] == 1) {
+            g2.drawChars(chars, first, 1, 0, 0);
+        } else {
+            g2.drawGlyphVector(getVector(run, font, g2.getFontRenderContext()), 0, 0);
+        }
+        g2.setTransform(at);
+    }
+
+    private GlyphVector getVector(int run, Font font, FontRenderContext frc) {
+        // the icon can be painted by several threads: the vector and its context are
+        // updated together and a vector is never modified once it is cached
+        synchronized (vectors) {
+            GlyphVector gv = vectors[run];
+            if (gv == null || !frc.equals(vectorFrcs[run])) {
+                int first = runStart[run];
+                int count = runCount[run];
+                float scale = runScale[run];
+                gv = font.createGlyphVector(frc, Arrays.copyOfRange(chars, first, first + count));
+                for (int i = 1; i < count; i++) {
+                    gv.setGlyphPosition(i, new Point2D.Float((xs[first + i] - xs[first]) / scale, (ys[first + i] - ys[first]) / scale));
+                }
+                gv.setGlyphPosition(0, new Point2D.Float(0, 0));
+                vectors[run] = gv;
+                vectorFrcs[run] = frc;
+            }
+
+            return gv;
+        }
+    }
+
+    void fillRect(float x, float y, float w, float h) {
+        if (4 * nrects + 4 > rects.length) {
+            rects = Arrays.copyOf(rects, 2 * rects.length);
+        }
+        rects[4 * nrects] = x;
+        rects[4 * nrects + 1] = y;
+        rects[4 * nrects + 2] = w;
+        rects[4 * nrects + 3] = h;
+        addOp(RECT, nrects++);
+    }
+
+    void drawChar(int fontId, char c, float scale, float x, float y) {
+        if (nglyphs == chars.length) {
+            chars = Arrays.copyOf(chars, 2 * nglyphs);
+            xs = Arrays.copyOf(xs, 2 * nglyphs);
+            ys = Arrays.copyOf(ys, 2 * nglyphs);
+        }
+        chars[nglyphs] = c;
+        xs[nglyphs] = x;
+        ys[nglyphs] = y;
+
+        int last = nruns - 1;
+        if (nops != 0 && kinds[nops - 1] == GLYPHS && colors[nops - 1] == color && runFont[last] == fontId && runScale[last] == scale) {
+            runCount[last]++;
+        } else {
+            if (nruns == runFont.length) {
+                runFont = Arrays.copyOf(runFont, 2 * nruns);
+                runScale = Arrays.copyOf(runScale, 2 * nruns);
+                runStart = Arrays.copyOf(runStart, 2 * nruns);
+                runCount = Arrays.copyOf(runCount, 2 * nruns);
+            }
+            runFont[nruns] = fontId;
+            runScale[nruns] = scale;
+            runStart[nruns] = nglyphs;
+            runCount[nruns] = 1;
+            addOp(GLYPHS, nruns++);
+        }
+        nglyphs++;
+    }
+
+    void fallback(Box box, float x, float y) {
+        if (nboxes == boxes.length) {
+            boxes = Arrays.copyOf(boxes, 2 * nboxes);
+            boxPos = Arrays.copyOf(boxPos, 4 * nboxes);
+        }
+        boxes[nboxes] = box;
+        boxPos[2 * nboxes] = x;
+        boxPos[2 * nboxes + 1] = y;
+        addOp(BOX, nboxes++);
+    }
+
+    private void addOp(byte kind, int index) {
+        if (nops == kinds.length) {
+            kinds = Arrays.copyOf(kinds, 2 * nops);
+            colors = Arrays.copyOf(colors, 2 * nops);
+            indices = Arrays.copyOf(indices, 2 * nops);
+        }
+        kinds[nops] = kind;
+        colors[nops] = color;
+        indices[nops] = index;
+        nops++;
+    }
+}
@@ -0,0 +1,258 @@
+/* DocumentRenderer.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.awt.Color;
+import java.awt.Insets;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Render the formulas of a document which share a preamble of definitions
+ * (<code>\newcommand</code>, <code>\definecolor</code>, ...).
+ * The preamble is parsed once in a context derived from the default one and frozen, so
+ * nothing leaks in the global registries and the renderer can be used by several threads.
+ * The formulas are parsed with the {@link TeXFormulaCache}: a formula repeated in the document
+ * is parsed once. The definitions made in a formula are local to it.
+ * The formulas can be given one at a time or as an iterator (or a reader with one formula by
+ * line): the iterators returned by layout and render work one formula at a time, so a whole
+ * document is never in memory.
+ */
+public final class DocumentRenderer {
+
+    private final TeXContext context;
+    private int style = TeXConstants.STYLE_DISPLAY;
+    private float size = 20;
+    private int inset = 0;
+    private Color fg = Color.BLACK;
+    private Color bg = null;
+
+    /**
+     * @param preamble the definitions shared by the formulas
+     * @throws ParseException if the preamble can't be parsed
+     */
+    public DocumentRenderer(String preamble) throws ParseException {
+        context = TeXContext.getDefault().derive();
+        if (preamble != null) {
+            new TeXFormula(preamble, context);
+        }
+        context.freeze();
+    }
+
+    /**
+     * @return the frozen context containing the definitions of the preamble
+     */
+    public TeXContext getContext() {
+        return context;
+    }
+
+    public DocumentRenderer setStyle(int style) {
+        this.style = style;
+        return this;
+    }
+
+    public DocumentRenderer setSize(float size) {
+        this.size = size;
+        return this;
+    }
+
+    public DocumentRenderer setInset(int inset) {
+        this.inset = inset;
+        return this;
+    }
+
+    /**
+     * @param fg the foreground color, black if null
+     */
+    public DocumentRenderer setForeground(Color fg) {
+        this.fg = fg == null ? Color.BLACK : fg;
+        return this;
+    }
+
+    /**
+     * @param bg the background color, transparent if null
+     */
+    public DocumentRenderer setBackground(Color bg) {
+        this.bg = bg;
+        return this;
+    }
+
+    /**
+     * @param latex a formula
+     * @return the parsed formula
+     * @throws ParseException if the formula can't be parsed
+     */
+    public TeXFormula parse(String latex) throws ParseException {
+        try {
+            return TeXFormulaCache.get(latex, context);
+        } catch (FrozenContextException e) {
+            // the formula defines something: it gets its own context
+            return new TeXFormula(latex, context.derive());
+        }
+    }
+
+    /**
+     * @param latex a formula
+     * @return the icon of the formula
+     * @throws ParseException if the formula can't be parsed
+     */
+    public TeXIcon layout(String latex) throws ParseException {
+        TeXIcon icon = parse(latex).createTeXIcon(style, size);
+        icon.setInsets(new Insets(inset, inset, inset, inset));
+        icon.setForeground(fg);
+
+        return icon;
+    }
+
+    /**
+     * @param latex a formula
+     * @return an ARGB image of the formula
+     * @throws ParseException if the formula can't be parsed
+     */
+    public BufferedImage render(String latex) throws ParseException {
+        TeXIcon icon = layout(latex);
+        BufferedImage image = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+        if (bg != null) {
+            Arrays.fill(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), bg.getRGB());
+        }
+        Rasterizer.paint(icon, image, 0, 0);
+
+        return image;
+    }
+
+    /**
+     * Lay out formulas one by one. When a formula can't be parsed, next() throws a
+     * ParseException and the iteration can go on with the next formula.
+     * @param formulas the formulas
+     * @return the icons
+     */
+    public Iterator<TeXIcon> layout(final Iterator<String> formulas) {
+        return new Iterator<TeXIcon>() {
+            public boolean hasNext() {
+                return formulas.hasNext();
+            }
+
+            public TeXIcon next() {
+                return layout(formulas.next());
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Render formulas one by one. When a formula can't be parsed, next() throws a
+     * ParseException and the iteration can go on with the next formula.
+     * @param formulas the formulas
+     * @return the images
+     */
+    public Iterator<BufferedImage> render(final Iterator<String> formulas) {
+        return new Iterator<BufferedImage>() {
+            public boolean hasNext() {
+                return formulas.hasNext();
+            }
+
+            public BufferedImage next() {
+                return render(formulas.next());
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Read the formulas of a reader: one formula by line, the blank lines are skipped.
+     * An IOException is thrown wrapped in a RuntimeException.
+     * @param in the reader
+     * @return the formulas
+     */
+    public static Iterator<String> formulas(Reader in) {
+        final BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        return new Iterator<String>() {
+            private String line;
+
+            public boolean hasNext() {
+                try {
+                    while (line == null) {
+                        line = reader.readLine();
+                        if (line == null) {
+                            return false;
+                        }
+                        if (line.trim().length() == 0) {
+                            line = null;
+                        }
+                    }
+                    return true;
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String s = line;
+                line = null;
+                return s;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
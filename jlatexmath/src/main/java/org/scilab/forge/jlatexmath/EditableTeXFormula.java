@@ -0,0 +1,322 @@
+/* EditableTeXFormula.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.awt.Color;
+import java.awt.Insets;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A formula which is edited, e.g. in an editor where it is rendered at each keystroke.
+ * After an edit, the groups <code>{...}</code> whose source has not changed are not parsed
+ * again: their atoms are shared with the previous version of the formula. The new formula
+ * is laid out and the edit returns the rectangle of the icon whose pixels have changed, so
+ * only this part needs to be repainted.
+ * The insets and the foreground set on the icon are kept by the next ones; when the size
+ * of the icon changes, the component which shows it has to be revalidated.
+ * This class is not thread-safe.
+ */
+public final class EditableTeXFormula {
+
+    private final TeXContext context;
+    private final int style;
+    private final float size;
+    private final ParseMemo memo;
+    private final Map<Integer, Rectangle2D> glyphBounds = new HashMap<Integer, Rectangle2D>();
+    private String latex;
+    private TeXFormula formula;
+    private TeXIcon icon;
+    private Ops ops;
+
+    /**
+     * @param latex the formula
+     * @param style the style of the formula
+     * @param size the point size
+     * @throws ParseException if the formula can't be parsed
+     */
+    public EditableTeXFormula(String latex, int style, float size) throws ParseException {
+        this(latex, TeXContext.getDefault(), style, size);
+    }
+
+    /**
+     * @param latex the formula
+     * @param context the context where the formula is parsed
+     * @param style the style of the formula
+     * @param size the point size
+     * @throws ParseException if the formula can't be parsed
+     */
+    public EditableTeXFormula(String latex, TeXContext context, int style, float size) throws ParseException {
+        this.context = context;
+        this.memo = new ParseMemo(context);
+        this.style = style;
+        this.size = size;
+        setLaTeX(latex);
+    }
+
+    public String getLaTeX() {
+        return latex;
+    }
+
+    /**
+     * @return the formula parsed from the last source which could be parsed
+     */
+    public TeXFormula getFormula() {
+        return formula;
+    }
+
+    /**
+     * @return the icon of the formula parsed from the last source which could be parsed
+     */
+    public TeXIcon getIcon() {
+        return icon;
+    }
+
+    /**
+     * Replace a part of the source. When the new source can't be parsed, the icon is unchanged.
+     * @param start the beginning of the replaced part
+     * @param end the end of the replaced part
+     * @param text the new text
+     * @return the rectangle of the icon to repaint, it can be empty
+     * @throws ParseException if the new source can't be parsed
+     */
+    public Rectangle replace(int start, int end, String text) throws ParseException {
+        if (start < 0 || end > latex.length() || start > end) {
+            throw new IndexOutOfBoundsException("Invalid range " + start + ".." + end + " in a formula of length " + latex.length());
+        }
+        return setLaTeX(latex.substring(0, start) + text + latex.substring(end));
+    }
+
+    /**
+     * Change the whole source. When the new source can't be parsed, the icon is unchanged.
+     * @param latex the new formula
+     * @return the rectangle of the icon to repaint, it can be empty
+     * @throws ParseException if the new source can't be parsed
+     */
+    public Rectangle setLaTeX(String latex) throws ParseException {
+        this.latex = latex;
+        memo.begin();
+        TeXFormula f;
+        try {
+            f = new TeXFormula(latex, context, memo);
+        } catch (ParseException e) {
+            memo.end(false);
+            throw e;
+        }
+        memo.end(true);
+
+        TeXIcon ic = f.createTeXIcon(style, size);
+        if (icon != null) {
+            ic.setInsets((Insets) icon.getInsets().clone(), true);
+            ic.setForeground(icon.getForeground());
+        }
+        Ops o = new Ops(ic);
+        Rectangle damage = ops == null ? new Rectangle(0, 0, ic.getIconWidth(), ic.getIconHeight()) : o.diff(ops);
+        formula = f;
+        icon = ic;
+        ops = o;
+
+        return damage;
+    }
+
+    /**
+     * @return the number of groups which have been reused since the creation of this formula
+     */
+    int getReusedGroups() {
+        return memo.getHits();
+    }
+
+    private Rectangle2D getGlyphBounds(int fontId, char c) {
+        final Integer key = (fontId << 16) | c;
+        Rectangle2D r = glyphBounds.get(key);
+        if (r == null) {
+            r = FontInfo.getFont(fontId).createGlyphVector(new FontRenderContext(null, true, false), new char[] {c}).getVisualBounds();
+            glyphBounds.put(key, r);
+        }
+        return r;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * A painted character or rectangle, fallback boxes are never equal to the ones of another layout
+     */
+    private static final class Op {
+
+        final int fontId;
+        final char c;
+        final float scale;
+        final float x;
+        final float y;
+        final float w;
+        final float h;
+        final Color color;
+        final Box box;
+
+        Op(int fontId, char c, float scale, float x, float y, float w, float h, Color color, Box box) {
+            this.fontId = fontId;
+            this.c = c;
+            this.scale = scale;
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+            this.color = color;
+            this.box = box;
+        }
+
+        public int hashCode() {
+            int h = (fontId * 31 + c) * 31 + Float.floatToIntBits(scale);
+            h = h * 31 + Float.floatToIntBits(x);
+            h = h * 31 + Float.floatToIntBits(y);
+            h = h * 31 + Float.floatToIntBits(w);
+            return h * 31 + Float.floatToIntBits(this.h);
+        }
+
+        public boolean equals(Object o) {
+            if (o instanceof Op) {
+                Op op = (Op) o;
+                return fontId == op.fontId && c == op.c && scale == op.scale && x == op.x && y == op.y
+                    && w == op.w && h == op.h && equal(color, op.color) && box == op.box;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The operations which paint an icon with their bounds in pixels
+     */
+    private final class Ops extends BoxPainter {
+
+        private final float scale;
+        private final Map<Op, Integer> counts = new HashMap<Op, Integer>();
+        private final List<Op> list = new ArrayList<Op>();
+        private final List<Rectangle2D> bounds = new ArrayList<Rectangle2D>();
+
+        Ops(TeXIcon icon) {
+            final Insets insets = icon.getInsets();
+            scale = icon.getSize();
+            color = icon.getForeground();
+            final Box box = icon.getBox();
+            box.paint(this, insets.left / scale, insets.top / scale + box.getHeight());
+        }
+
+        void fillRect(float x, float y, float w, float h) {
+            add(new Op(-1, '\0', 0, x, y, w, h, color, null),
+                new Rectangle2D.Float(Math.min(x, x + w), Math.min(y, y + h), Math.abs(w), Math.abs(h)));
+        }
+
+        void drawChar(int fontId, char c, float scale, float x, float y) {
+            final Rectangle2D r = getGlyphBounds(fontId, c);
+            add(new Op(fontId, c, scale, x, y, 0, 0, color, null),
+                new Rectangle2D.Double(x + r.getX() * scale, y + r.getY() * scale, r.getWidth() * scale, r.getHeight() * scale));
+        }
+
+        void fallback(Box box, float x, float y) {
+            add(new Op(-1, '\0', 0, x, y, 0, 0, color, box),
+                new Rectangle2D.Float(x, y - box.getHeight(), box.getWidth(), box.getHeight() + box.getDepth()));
+        }
+
+        private void add(Op op, Rectangle2D r) {
+            final Integer n = counts.get(op);
+            counts.put(op, n == null ? 1 : n + 1);
+            list.add(op);
+            bounds.add(r);
+        }
+
+        /**
+         * @return the pixels painted by only one of the two icons
+         */
+        Rectangle diff(Ops old) {
+            final Map<Op, Integer> left = new HashMap<Op, Integer>(old.counts);
+            Rectangle2D damage = null;
+            for (int i = 0; i < list.size(); i++) {
+                final Op op = list.get(i);
+                final Integer n = left.get(op);
+                if (n != null && n != 0) {
+                    left.put(op, n - 1);
+                } else {
+                    damage = union(damage, toPixels(bounds.get(i)));
+                }
+            }
+            for (int i = 0; i < old.list.size(); i++) {
+                final Op op = old.list.get(i);
+                final Integer n = left.get(op);
+                if (n != null && n != 0) {
+                    left.put(op, n - 1);
+                    damage = union(damage, old.toPixels(old.bounds.get(i)));
+                }
+            }
+            if (damage == null) {
+                return new Rectangle();
+            }
+            // one pixel more for the antialiasing
+            final int x0 = (int) Math.floor(damage.getMinX()) - 1, y0 = (int) Math.floor(damage.getMinY()) - 1;
+            final int x1 = (int) Math.ceil(damage.getMaxX()) + 1, y1 = (int) Math.ceil(damage.getMaxY()) + 1;
+            return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+        }
+
+        private Rectangle2D toPixels(Rectangle2D r) {
+            return new Rectangle2D.Double(r.getX() * scale, r.getY() * scale, r.getWidth() * scale, r.getHeight() * scale);
+        }
+
+        private Rectangle2D union(Rectangle2D a, Rectangle2D b) {
+            if (a == null) {
+                return b;
+            }
+            final Rectangle2D r = new Rectangle2D.Double();
+            Rectangle2D.union(a, b, r);
+            return r;
+        }
+    }
+}
@@ -47,8 +47,9 @@
 package org.scilab.forge.jlatexmath;
 
 import java.awt.Font;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Contains all the font information for 1 font.
@@ -60,42 +61,31 @@ public class FontInfo {
      */
     public static final int NUMBER_OF_CHAR_CODES = 256;
 
-    private static Map<Integer, FontInfo> fonts = new HashMap<Integer, FontInfo>();
-
-    private class CharCouple {
-
-        private final char left, right;
-
-        CharCouple(char l, char r) {
-            left = l;
-            right = r;
-        }
-
-        public boolean equals(Object o) {
-            CharCouple lig = (CharCouple) o;
-            return left == lig.left && right == lig.right;
-        }
-
-        public int hashCode() {
-            return (left + right) % 128;
-        }
-    }
+    private static Map<Integer, FontInfo> fonts = new ConcurrentHashMap<Integer, FontInfo>();
 
     // ID
     private final int fontId;
 
-    // font
-    private Font font;
+    // font, decoded once on first use
+    private volatile Font font;
     private final Object base;
     private final String path;
     private final String fontName;
 
-    private final Map<CharCouple,Character> lig = new HashMap<CharCouple,Character> ();
-    private final Map<CharCouple,Float> kern = new HashMap<CharCouple,Float>();
+    // keys are (left << 16) | right
+    private final IntIntMap lig = new IntIntMap(8);
+    private final IntIntMap kern = new IntIntMap(64);
     private float[][] metrics;
     private CharFont[] nextLarger;
     private int[][] extensions;
-    private HashMap<Character, Character> unicode = null;
+    private IntIntMap unicode = null;
+
+    // the Char objects already created, one array for each size and scale: the scale
+    // depends on TeXFormula.PIXELS_PER_POINT which is changed by TeXFormula.setDPITarget
+    private static final int MAX_CACHED_SIZES = 16;
+    // the pairs (size, scale) of the arrays in chars
+    private volatile float[] charKeys = new float[0];
+    private volatile Char[][] chars = new Char[0][];
 
     // skew character of the font (used for positioning accents)
     private char skewChar = (char) -1;
@@ -130,7 +120,7 @@ public class FontInfo {
         this.itVersion = itVersion;
         int num = NUMBER_OF_CHAR_CODES;
         if (unicode != 0) {
-            this.unicode = new HashMap<Character, Character>(unicode);
+            this.unicode = new IntIntMap(unicode);
             num = unicode;
         }
         metrics = new float[num][];
@@ -149,7 +139,7 @@ public class FontInfo {
      *           kern value
      */
     public void addKern(char left, char right, float k) {
-        kern.put(new CharCouple(left, right), new Float(k));
+        kern.put(IntIntMap.pack(left, right), Float.floatToRawIntBits(k));
     }
 
     /**
@@ -161,41 +151,107 @@ public class FontInfo {
      *           ligature to replace left and right character
      */
     public void addLigature(char left, char right, char ligChar) {
-        lig.put(new CharCouple(left, right), new Character(ligChar));
+        lig.put(IntIntMap.pack(left, right), ligChar);
     }
 
     public int[] getExtension(char ch) {
-        if (unicode == null)
-            return extensions[ch];
-        return extensions[unicode.get(ch)];
+        return extensions[index(ch)];
     }
 
     public float getKern(char left, char right, float factor) {
-        Object obj = kern.get(new CharCouple(left, right));
-        if (obj == null)
+        if (kern.size() == 0)
             return 0;
-        else
-            return ((Float) obj).floatValue() * factor;
+        // 0 is the bit pattern of 0f
+        return Float.intBitsToFloat(kern.get(IntIntMap.pack(left, right), 0)) * factor;
     }
 
     public CharFont getLigature(char left, char right) {
-        Object obj = lig.get(new CharCouple(left, right));
-        if (obj == null)
+        if (lig.size() == 0)
+            return null;
+        int c = lig.get(IntIntMap.pack(left, right), -1);
+        if (c == -1)
             return null;
         else
-            return new CharFont(((Character) obj).charValue(), fontId);
+            return new CharFont((char) c, fontId);
     }
 
-    public float[] getMetrics(char c) {
+    // index of the character c in the arrays
+    private int index(char c) {
+        return unicode == null ? c : unicode.get(c, -1);
+    }
+
+    // index of the character c in the arrays, a new one is created if needed
+    private int newIndex(char c) {
         if (unicode == null)
-            return metrics[c];
-        return metrics[unicode.get(c)];
+            return c;
+        int i = unicode.get(c, -1);
+        if (i == -1) {
+            i = unicode.size();
+            unicode.put(c, i);
+        }
+        return i;
+    }
+
+    public float[] getMetrics(char c) {
+        return metrics[index(c)];
     }
 
     public CharFont getNextLarger(char ch) {
-        if (unicode == null)
-            return nextLarger[ch];
-        return nextLarger[unicode.get(ch)];
+        return nextLarger[index(ch)];
+    }
+
+    /**
+     * Get a Char for c at the given size. The Char objects are immutable so
+     * they are shared: only one is created for a character, a size and a
+     * number of pixels per point.
+     * @param c the character
+     * @param size the size factor
+     * @return the Char
+     */
+    public Char getChar(char c, float size) {
+        final int i = index(c);
+        final float scale = size * TeXFormula.PIXELS_PER_POINT;
+        final Char[] cache = getCharCache(size, scale);
+        Char ch = cache == null ? null : cache[i];
+        if (ch == null) {
+            final float[] m = metrics[i];
+            ch = new Char(c, getFont(), fontId, new Metrics(m[DefaultTeXFont.WIDTH], m[DefaultTeXFont.HEIGHT], m[DefaultTeXFont.DEPTH], m[DefaultTeXFont.IT], scale, size));
+            if (cache != null) {
+                // a race just creates an other equivalent Char
+                cache[i] = ch;
+            }
+        }
+        return ch;
+    }
+
+    private Char[] getCharCache(float size, float scale) {
+        float[] keys = charKeys;
+        for (int i = 0; i < keys.length; i += 2) {
+            if (keys[i] == size && keys[i + 1] == scale) {
+                return chars[i / 2];
+            }
+        }
+        synchronized (this) {
+            keys = charKeys;
+            for (int i = 0; i < keys.length; i += 2) {
+                if (keys[i] == size && keys[i + 1] == scale) {
+                    return chars[i / 2];
+                }
+            }
+            final int n = keys.length / 2;
+            if (n == MAX_CACHED_SIZES) {
+                return null;
+            }
+            final Char[][] newChars = Arrays.copyOf(chars, n + 1);
+            final float[] newKeys = Arrays.copyOf(keys, keys.length + 2);
+            newChars[n] = new Char[metrics.length];
+            newKeys[keys.length] = size;
+            newKeys[keys.length + 1] = scale;
+            // chars must be published before charKeys
+            chars = newChars;
+            charKeys = newKeys;
+            return newChars[n];
+        }
     }
 
     public float getQuad(float factor) {
@@ -223,36 +279,15 @@ public class FontInfo {
     }
 
     public void setExtension(char ch, int[] ext) {
-        if (unicode == null)
-            extensions[ch] = ext;
-        else if (!unicode.containsKey(ch)) {
-            char s = (char)unicode.size();
-            unicode.put(ch, s);
-            extensions[s] = ext;
-        } else
-            extensions[unicode.get(ch)] = ext;
+        extensions[newIndex(ch)] = ext;
     }
 
     public void setMetrics(char c, float[] arr) {
-        if (unicode == null)
-            metrics[c] = arr;
-        else if (!unicode.containsKey(c)) {
-            char s = (char)unicode.size();
-            unicode.put(c, s);
-            metrics[s] = arr;
-        } else
-            metrics[unicode.get(c)] = arr;
+        metrics[newIndex(c)] = arr;
     }
 
     public void setNextLarger(char ch, char larger, int fontLarger) {
-        if (unicode == null)
-            nextLarger[ch] = new CharFont(larger, fontLarger);
-        else if (!unicode.containsKey(ch)) {
-            char s = (char)unicode.size();
-            unicode.put(ch, s);
-            nextLarger[s] = new CharFont(larger, fontLarger);
-        } else
-            nextLarger[unicode.get(ch)] = new CharFont(larger, fontLarger);
+        nextLarger[newIndex(ch)] = new CharFont(larger, fontLarger);
     }
 
     public void setSkewChar(char c) {
@@ -304,18 +339,49 @@ public class FontInfo {
     }
 
     public Font getFont() {
-        if (font == null) {
-            if (base == null) {
-                font = DefaultTeXFontParser.createFont(path);
-            } else {
-                font = DefaultTeXFontParser.createFont(base.getClass().getResourceAsStream(path), fontName);
+        Font f = font;
+        if (f == null) {
+            synchronized (this) {
+                f = font;
+                if (f == null) {
+                    if (base == null) {
+                        f = DefaultTeXFontParser.createFont(path);
+                    } else {
+                        f = DefaultTeXFontParser.createFont(base.getClass().getResourceAsStream(path), fontName);
+                    }
+                    font = f;
+                }
             }
         }
-        return font;
+        return f;
     }
 
     public static Font getFont(int id) {
         return fonts.get(id).getFont();
     }
-}
 
+    /**
+     * Decode all the fonts which have been described, so that the first
+     * rendering using a given font does not have to wait for it.
+     */
+    public static void preloadAll() throws ResourceParseException {
+        // the font descriptions are read when DefaultTeXFont is initialized
+        DefaultTeXFont.ensureLoaded();
+        for (FontInfo info : fonts.values()) {
+            info.getFont();
+        }
+    }
+
+    /**
+     * Decode the fonts with the given ids.
+     */
+    public static void preload(int... fontIds) throws ResourceParseException {
+        DefaultTeXFont.ensureLoaded();
+        for (int id : fontIds) {
+            FontInfo info = fonts.get(id);
+            if (info != null) {
+                info.getFont();
+            }
+        }
+    }
+}
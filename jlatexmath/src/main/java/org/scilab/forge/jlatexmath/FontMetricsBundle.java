@@ -0,0 +1,422 @@
+/* FontMetricsBundle.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A binary version of the font metrics (the jlm_*.xml files) of the default fonts.
+ * It is generated at build time (see the main method) and it avoids to build and walk
+ * a DOM for each of these files when the library is initialized.
+ * When the bundle is missing or out of date, the XML files are read as before.
+ */
+public final class FontMetricsBundle {
+
+    public static final String RESOURCE_NAME = "DefaultTeXFont.bin";
+
+    private static final int MAGIC = 0x4A4C4D42; // JLMB
+    private static final int VERSION = 1;
+
+    private static final FontMetricsBundle EMPTY = new FontMetricsBundle(null);
+    private static FontMetricsBundle defaultBundle;
+
+    private final Map<String, Integer> offsets = new HashMap<String, Integer>();
+    private final ByteBuffer data;
+
+    private FontMetricsBundle(ByteBuffer data) {
+        this.data = data;
+        if (data != null) {
+            final int n = data.getInt();
+            for (int i = 0; i < n; i++) {
+                final String include = readString(data);
+                offsets.put(include, data.getInt());
+            }
+        }
+    }
+
+    /**
+     * @return the bundle shipped with the library, or null if there is no usable bundle
+     */
+    static synchronized FontMetricsBundle getDefault() {
+        if (defaultBundle == null) {
+            final Snapshot snapshot = Snapshot.get();
+            FontMetricsBundle bundle = snapshot == null ? null : snapshot.readMetrics();
+            if (bundle == null) {
+                final long start = System.nanoTime();
+                bundle = load(DefaultTeXFontParser.class.getResourceAsStream(RESOURCE_NAME));
+                Startup.record(RESOURCE_NAME, start);
+            }
+            defaultBundle = bundle;
+        }
+        return defaultBundle == EMPTY ? null : defaultBundle;
+    }
+
+    private static FontMetricsBundle load(InputStream in) {
+        if (in == null) {
+            return EMPTY;
+        }
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 18);
+            final byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                bytes.write(chunk, 0, n);
+            }
+            final ByteBuffer buf = ByteBuffer.allocateDirect(bytes.size());
+            buf.put(bytes.toByteArray());
+            buf.flip();
+            final FontMetricsBundle bundle = read(buf);
+            return bundle == null ? EMPTY : bundle;
+        } catch (IOException e) {
+            return EMPTY;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) { }
+        }
+    }
+
+    /**
+     * @param buf a buffer containing a bundle from its first byte
+     * @return the bundle or null if it is out of date or damaged
+     */
+    static FontMetricsBundle read(ByteBuffer buf) {
+        if (buf.remaining() < 8 || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            return null;
+        }
+        try {
+            return new FontMetricsBundle(buf);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param include the path of a metrics file as written in DefaultTeXFont.xml
+     * @return a buffer positioned on the record of this file or null if there is no such record
+     */
+    ByteBuffer get(String include) {
+        final Integer offset = offsets.get(include);
+        if (offset == null) {
+            return null;
+        }
+        final ByteBuffer buf = data.duplicate();
+        buf.position(offset.intValue());
+        return buf;
+    }
+
+    static FontInfo readFontInfo(ByteBuffer buf, Object base, String name) throws ResourceParseException {
+        final String fontName = readString(buf);
+        final String fontId = readString(buf);
+        if (DefaultTeXFontParser.Font_ID.indexOf(fontId) < 0)
+            DefaultTeXFontParser.Font_ID.add(fontId);
+        else throw new FontAlreadyLoadedException("Font " + fontId + " is already loaded !");
+        try {
+            return readFontInfo(buf, base, name, fontName, fontId);
+        } catch (RuntimeException e) {
+            // the record is damaged: the caller reads the XML file instead
+            DefaultTeXFontParser.Font_ID.remove(fontId);
+            throw e;
+        }
+    }
+
+    private static FontInfo readFontInfo(ByteBuffer buf, Object base, String name, String fontName, String fontId) {
+        final float space = buf.getFloat();
+        final float xHeight = buf.getFloat();
+        final float quad = buf.getFloat();
+        final int skewChar = buf.getInt();
+        final int unicode = buf.getInt();
+        if (unicode < 0 || unicode > Character.MAX_VALUE + 1) {
+            throw new IllegalArgumentException("Invalid number of characters: " + unicode);
+        }
+        final String bold = readString(buf);
+        final String roman = readString(buf);
+        final String ss = readString(buf);
+        final String tt = readString(buf);
+        final String it = readString(buf);
+
+        final String path = name.substring(0, name.lastIndexOf("/") + 1) + fontName;
+        final FontInfo info = new FontInfo(DefaultTeXFontParser.Font_ID.indexOf(fontId), base, path, fontName, unicode, xHeight, space, quad, bold, roman, ss, tt, it);
+        if (skewChar != -1)
+            info.setSkewChar((char) skewChar);
+
+        final int nchars = buf.getInt();
+        for (int i = 0; i < nchars; i++) {
+            final char ch = buf.getChar();
+            final float[] metrics = new float[4];
+            metrics[DefaultTeXFont.WIDTH] = buf.getFloat();
+            metrics[DefaultTeXFont.HEIGHT] = buf.getFloat();
+            metrics[DefaultTeXFont.DEPTH] = buf.getFloat();
+            metrics[DefaultTeXFont.IT] = buf.getFloat();
+            info.setMetrics(ch, metrics);
+
+            for (int n = buf.getShort(); n > 0; n--) {
+                final char code = buf.getChar();
+                info.addKern(ch, code, buf.getFloat());
+            }
+            for (int n = buf.getShort(); n > 0; n--) {
+                final char code = buf.getChar();
+                info.addLigature(ch, code, buf.getChar());
+            }
+            final String larger = readString(buf);
+            if (larger != null) {
+                info.setNextLarger(ch, buf.getChar(), DefaultTeXFontParser.Font_ID.indexOf(larger));
+            }
+            if (buf.get() != 0) {
+                final int[] ext = new int[4];
+                ext[DefaultTeXFont.REP] = buf.getInt();
+                ext[DefaultTeXFont.TOP] = buf.getInt();
+                ext[DefaultTeXFont.MID] = buf.getInt();
+                ext[DefaultTeXFont.BOT] = buf.getInt();
+                info.setExtension(ch, ext);
+            }
+        }
+
+        return info;
+    }
+
+    /**
+     * Read a number of entries, it is checked against the remaining bytes so that a damaged
+     * buffer cannot make allocate a huge table
+     * @param size the minimal size of an entry in bytes
+     */
+    static int readCount(ByteBuffer buf, int size) {
+        final int n = buf.getInt();
+        if (n < 0 || n > buf.remaining() / size) {
+            throw new BufferUnderflowException();
+        }
+        return n;
+    }
+
+    static String readString(ByteBuffer buf) {
+        final int len = buf.getShort();
+        if (len < 0) {
+            return null;
+        }
+        final char[] chars = new char[len];
+        for (int i = 0; i < len; i++) {
+            chars[i] = buf.getChar();
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Write the bundle of the metrics files included in DefaultTeXFont.xml
+     * @param out the stream where to write
+     */
+    static void write(DataOutputStream out) throws IOException, ResourceParseException {
+        final List<String> includes = new DefaultTeXFontParser().getMetricsIncludes();
+        final ByteArrayOutputStream records = new ByteArrayOutputStream(1 << 18);
+        final DataOutputStream rec = new DataOutputStream(records);
+        final int[] offsets = new int[includes.size()];
+        for (int i = 0; i < includes.size(); i++) {
+            offsets[i] = rec.size();
+            writeFont(rec, parse(includes.get(i)), includes.get(i));
+        }
+        rec.flush();
+
+        // the header is made of the magic, the version, the index and then the records
+        final ByteArrayOutputStream index = new ByteArrayOutputStream();
+        final DataOutputStream idx = new DataOutputStream(index);
+        idx.writeInt(includes.size());
+        for (String include : includes) {
+            writeString(idx, include);
+            idx.writeInt(0);
+        }
+        final int start = 8 + idx.size();
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(includes.size());
+        for (int i = 0; i < includes.size(); i++) {
+            writeString(out, includes.get(i));
+            out.writeInt(start + offsets[i]);
+        }
+        records.writeTo(out);
+        out.flush();
+    }
+
+    private static Element parse(String include) throws ResourceParseException {
+        final InputStream in = DefaultTeXFontParser.class.getResourceAsStream(include);
+        if (in == null) {
+            throw new XMLResourceParseException("Cannot find the file " + include + "!");
+        }
+        try {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in).getDocumentElement();
+        } catch (Exception e) {
+            throw new XMLResourceParseException(include, e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) { }
+        }
+    }
+
+    private static void writeFont(DataOutputStream out, Element font, String name) throws IOException, ResourceParseException {
+        writeString(out, DefaultTeXFontParser.getAttrValueAndCheckIfNotNull("name", font));
+        writeString(out, DefaultTeXFontParser.getAttrValueAndCheckIfNotNull("id", font));
+        out.writeFloat(DefaultTeXFontParser.getFloatAndCheck("space", font));
+        out.writeFloat(DefaultTeXFontParser.getFloatAndCheck("xHeight", font));
+        out.writeFloat(DefaultTeXFontParser.getFloatAndCheck("quad", font));
+        out.writeInt(DefaultTeXFontParser.getOptionalInt("skewChar", font, -1));
+        out.writeInt(DefaultTeXFontParser.getOptionalInt("unicode", font, 0));
+        writeString(out, getOptionalString("boldVersion", font));
+        writeString(out, getOptionalString("romanVersion", font));
+        writeString(out, getOptionalString("ssVersion", font));
+        writeString(out, getOptionalString("ttVersion", font));
+        writeString(out, getOptionalString("itVersion", font));
+
+        final NodeList chars = font.getElementsByTagName("Char");
+        out.writeInt(chars.getLength());
+        for (int i = 0; i < chars.getLength(); i++) {
+            final Element ch = (Element) chars.item(i);
+            out.writeChar((char) DefaultTeXFontParser.getIntAndCheck("code", ch));
+            out.writeFloat(DefaultTeXFontParser.getOptionalFloat("width", ch, 0));
+            out.writeFloat(DefaultTeXFontParser.getOptionalFloat("height", ch, 0));
+            out.writeFloat(DefaultTeXFontParser.getOptionalFloat("depth", ch, 0));
+            out.writeFloat(DefaultTeXFontParser.getOptionalFloat("italic", ch, 0));
+
+            final List<Element> kerns = new ArrayList<Element>();
+            final List<Element> ligs = new ArrayList<Element>();
+            Element larger = null;
+            Element extension = null;
+            final NodeList children = ch.getChildNodes();
+            for (int j = 0; j < children.getLength(); j++) {
+                final Node node = children.item(j);
+                if (node.getNodeType() != Node.ELEMENT_NODE) {
+                    continue;
+                }
+                final Element el = (Element) node;
+                final String tag = el.getTagName();
+                if ("Kern".equals(tag)) {
+                    kerns.add(el);
+                } else if ("Lig".equals(tag)) {
+                    ligs.add(el);
+                } else if ("NextLarger".equals(tag)) {
+                    larger = el;
+                } else if ("Extension".equals(tag)) {
+                    extension = el;
+                } else {
+                    throw new XMLResourceParseException(name + ": a <Char>-element has an unknown child element '" + tag + "'!");
+                }
+            }
+
+            out.writeShort(kerns.size());
+            for (Element el : kerns) {
+                out.writeChar((char) DefaultTeXFontParser.getIntAndCheck("code", el));
+                out.writeFloat(DefaultTeXFontParser.getFloatAndCheck("val", el));
+            }
+            out.writeShort(ligs.size());
+            for (Element el : ligs) {
+                out.writeChar((char) DefaultTeXFontParser.getIntAndCheck("code", el));
+                out.writeChar((char) DefaultTeXFontParser.getIntAndCheck("ligCode", el));
+            }
+            if (larger == null) {
+                writeString(out, null);
+            } else {
+                writeString(out, DefaultTeXFontParser.getAttrValueAndCheckIfNotNull("fontId", larger));
+                out.writeChar((char) DefaultTeXFontParser.getIntAndCheck("code", larger));
+            }
+            if (extension == null) {
+                out.writeByte(0);
+            } else {
+                out.writeByte(1);
+                out.writeInt(DefaultTeXFontParser.getIntAndCheck("rep", extension));
+                out.writeInt(DefaultTeXFontParser.getOptionalInt("top", extension, DefaultTeXFont.NONE));
+                out.writeInt(DefaultTeXFontParser.getOptionalInt("mid", extension, DefaultTeXFont.NONE));
+                out.writeInt(DefaultTeXFontParser.getOptionalInt("bot", extension, DefaultTeXFont.NONE));
+            }
+        }
+    }
+
+    private static String getOptionalString(String attrName, Element element) {
+        final String value = element.getAttribute(attrName);
+        return value.equals("") ? null : value;
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeShort(-1);
+        } else {
+            out.writeShort(s.length());
+            out.writeChars(s);
+        }
+    }
+
+    /**
+     * Generate the bundle, it is called during the build (process-classes phase).
+     * @param args the path of the file to create
+     */
+    public static void main(String[] args) throws IOException {
+        final File file = new File(args.length == 0 ? RESOURCE_NAME : args[0]);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+    }
+}
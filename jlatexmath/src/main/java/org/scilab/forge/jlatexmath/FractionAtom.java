@@ -286,7 +286,7 @@ public class FractionAtom extends Atom {
         vBox.setDepth(shiftDown + denom.getDepth());
 
         // \nulldelimiterspace is set by default to 1.2pt = 0.12em)
-        float f = new SpaceAtom(TeXConstants.UNIT_EM, 0.12f, 0, 0).createBox(env).getWidth();
+        float f = 0.12f * SpaceAtom.getFactor(TeXConstants.UNIT_EM, env);
 
         return new HorizontalBox(vBox, vBox.getWidth() + 2 * f, TeXConstants.ALIGN_CENTER);
     }
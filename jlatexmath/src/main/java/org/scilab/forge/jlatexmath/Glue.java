@@ -65,9 +65,11 @@ public class Glue {
     private static final int[][][] glueTable;
 
     static {
+        final long start = System.nanoTime();
         GlueSettingsParser parser = new GlueSettingsParser();
         glueTypes = parser.getGlueTypes();
         glueTable = parser.createGlueTable();
+        Startup.record("Glue", start);
     }
 
     public Glue(float space, float stretch, float shrink, String name) {
@@ -84,6 +86,18 @@ public class Glue {
         return this.name;
     }
 
+    float getSpace() {
+        return space;
+    }
+
+    float getStretch() {
+        return stretch;
+    }
+
+    float getShrink() {
+        return shrink;
+    }
+
     /**
      * Creates a box representing the glue type according to the "glue rules" based
      * on the atom types between which the glue must be inserted.
@@ -65,6 +65,10 @@ public class GlueBox extends Box {
         // no visible effect
     }
 
+    void paint(BoxPainter p, float x, float y) {
+        // no visible effect
+    }
+
     public int getLastFontId() {
         return TeXFont.NO_FONT;
     }
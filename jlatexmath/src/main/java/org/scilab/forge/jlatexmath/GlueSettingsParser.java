@@ -46,6 +46,7 @@
 
 package org.scilab.forge.jlatexmath;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -61,7 +62,7 @@ import org.w3c.dom.NodeList;
  */
 public class GlueSettingsParser {
 
-    private static final String RESOURCE_NAME = "GlueSettings.xml";
+    static final String RESOURCE_NAME = "GlueSettings.xml";
 
     private final Map<String,Integer> typeMappings = new HashMap<String,Integer>();
     private final Map<String,Integer> glueTypeMappings = new HashMap<String,Integer>();
@@ -70,15 +71,43 @@ public class GlueSettingsParser {
     private final Map<String,Integer> styleMappings = new HashMap<String,Integer>();
 
     private Element root;
+    private Snapshot snapshot;
 
     public GlueSettingsParser() throws ResourceParseException {
+        snapshot = Snapshot.get();
+        if (snapshot != null) {
+            glueTypes = snapshot.readGlueTypes();
+        }
+        if (glueTypes == null) {
+            parseResource();
+        }
+    }
+
+    /**
+     * Parse the resource when there is no snapshot or when a table cannot be read from it
+     */
+    private void parseResource() throws ResourceParseException {
+        try {
+            setTypeMappings();
+            setStyleMappings();
+            root = Startup.getDocument(RESOURCE_NAME);
+            parseGlueTypes();
+        } catch (Exception e) { // JDOMException or IOException
+            throw new XMLResourceParseException(RESOURCE_NAME, e);
+        }
+    }
+
+    /**
+     * Parse the glue settings from the given stream, the snapshot is not used
+     */
+    GlueSettingsParser(InputStream file) throws ResourceParseException {
         try {
             setTypeMappings();
             setStyleMappings();
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
             factory.setIgnoringElementContentWhitespace(true);
             factory.setIgnoringComments(true);
-            root = factory.newDocumentBuilder().parse(GlueSettingsParser.class.getResourceAsStream(RESOURCE_NAME)).getDocumentElement();
+            root = factory.newDocumentBuilder().parse(file).getDocumentElement();
             parseGlueTypes();
         } catch (Exception e) { // JDOMException or IOException
             throw new XMLResourceParseException(RESOURCE_NAME, e);
@@ -166,6 +195,13 @@ public class GlueSettingsParser {
     }
 
     public int[][][] createGlueTable() throws ResourceParseException {
+        int[][][] fromSnapshot = snapshot == null ? null : snapshot.readGlueTable();
+        if (fromSnapshot != null) {
+            return fromSnapshot;
+        }
+        if (root == null) {
+            parseResource();
+        }
         int size = typeMappings.size();
         int[][][] table = new int[size][size][styleMappings.size()];
         Element glueTable = (Element)root.getElementsByTagName("GlueTable").item(0);
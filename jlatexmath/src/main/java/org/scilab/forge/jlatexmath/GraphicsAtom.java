@@ -45,60 +45,43 @@
 
 package org.scilab.forge.jlatexmath;
 
-import java.awt.Graphics2D;
-import java.awt.Image;
-import java.awt.Label;
-import java.awt.MediaTracker;
-import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * An atom representing an atom containing a graphic.
+ * The image is got from the {@link ImageCache}: when it is loaded asynchronously, an empty
+ * box is laid out until the image is available.
  */
 public class GraphicsAtom extends Atom {
 
-    private Image image = null;
-    private BufferedImage bimage;
-    private Label c;
+    private volatile BufferedImage bimage;
+    private volatile Future<BufferedImage> future;
     private int w, h;
 
     private Atom base;
-    private boolean first = true;
     private int interp = -1;
 
     public GraphicsAtom(String path, String option) {
-        File f = new File(path);
-        if (!f.exists()) {
-            try {
-                URL url = new URL(path);
-                image = Toolkit.getDefaultToolkit().getImage(url);
-            } catch (MalformedURLException e) {
-                image = null;
-            }
+        if (ImageCache.isAsynchronous()) {
+            future = ImageCache.getImageLater(path);
         } else {
-            image = Toolkit.getDefaultToolkit().getImage(path);
-        }
-
-        if (image != null) {
-            c = new Label();
-            MediaTracker tracker = new MediaTracker(c);
-            tracker.addImage(image, 0);
-            try {
-                tracker.waitForID(0);
-            } catch (InterruptedException e) {
-                image = null;
-            }
+            bimage = ImageCache.getImage(path);
         }
         draw();
         buildAtom(option);
     }
 
     protected void buildAtom(String option) {
-        base = this;
+        base = new Atom() {
+            public Box createBox(TeXEnvironment env) {
+                env.isColored = true;
+                float width = w * SpaceAtom.getFactor(TeXConstants.UNIT_PIXEL, env);
+                float height = h * SpaceAtom.getFactor(TeXConstants.UNIT_PIXEL, env);
+                return new GraphicsBox(bimage, width, height, env.getSize(), interp);
+            }
+        };
         Map<String, String> options = ParseOption.parseMap(option);
         if (options.containsKey("width") || options.containsKey("height")) {
             base = new ResizeAtom(base, options.get("width"), options.get("height"), options.containsKey("keepaspectratio"));
@@ -122,29 +105,35 @@ public class GraphicsAtom extends Atom {
         }
     }
 
+    /**
+     * Get the image if it has been loaded asynchronously (this method doesn't wait for it).
+     */
     public void draw() {
-        if (image != null) {
-            w = image.getWidth(c);
-            h = image.getHeight(c);
-            bimage = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2d = bimage.createGraphics();
-            g2d.drawImage(image, 0, 0, null);
-            g2d.dispose();
+        Future<BufferedImage> f = future;
+        if (f != null && f.isDone()) {
+            BufferedImage image = ImageCache.get(f);
+            if (image != null) {
+                w = image.getWidth();
+                h = image.getHeight();
+            }
+            bimage = image;
+            future = null;
+        } else if (f == null && bimage != null) {
+            w = bimage.getWidth();
+            h = bimage.getHeight();
         }
     }
 
     public Box createBox(TeXEnvironment env) {
-        if (image != null) {
-            if (first) {
-                first = false;
-                return base.createBox(env);
-            } else {
-                env.isColored = true;
-                float width = w * SpaceAtom.getFactor(TeXConstants.UNIT_PIXEL, env);
-                float height = h * SpaceAtom.getFactor(TeXConstants.UNIT_PIXEL, env);
-                return new GraphicsBox(bimage, width, height, env.getSize(), interp);
+        if (future != null) {
+            draw();
+            if (future != null) {
+                return new StrutBox(0, 0, 0, 0);
             }
         }
+        if (bimage != null) {
+            return base.createBox(env);
+        }
 
         return new TeXFormula("\\text{ No such image file ! }").root.createBox(env);
     }
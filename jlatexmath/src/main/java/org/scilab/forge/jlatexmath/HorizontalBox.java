@@ -120,6 +120,16 @@ public class HorizontalBox extends Box {
         endDraw(g2);
     }
 
+    void paint(BoxPainter p, float x, float y) {
+        Color prev = startPaint(p, x, y);
+        float xPos = x;
+        for (Box box: children) {
+            box.paint(p, xPos, y + box.shift);
+            xPos += box.getWidth();
+        }
+        p.setColor(prev);
+    }
+
     public final void add(Box b) {
         recalculate(b);
         super.add(b);
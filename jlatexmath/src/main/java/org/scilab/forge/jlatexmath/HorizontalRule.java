@@ -95,6 +95,15 @@ public class HorizontalRule extends Box {
         g2.setColor(old);
     }
 
+    void paint(BoxPainter p, float x, float y) {
+        Color old = p.getColor();
+        if (color != null) {
+            p.setColor(color);
+        }
+        p.fillRect(x, y - height + speShift, width, height);
+        p.setColor(old);
+    }
+
     public int getLastFontId() {
         return TeXFont.NO_FONT;
     }
@@ -0,0 +1,435 @@
+/* ImageCache.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Cache of the images included with <code>\includegraphics</code>.
+ * An image is decoded once by the {@link ImageResolver} and shared by all the formulas
+ * which include it, until its stamp (the last modification time for a file) changes.
+ * The cache is bounded by a number of bytes and evicts the least recently used images.
+ * When the loading is asynchronous, the parser doesn't wait for the image: an empty box is
+ * laid out until the image is decoded in a background thread.
+ */
+public final class ImageCache {
+
+    /**
+     * Default size in bytes of the cache (16 MB)
+     */
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024L * 1024L;
+
+    /**
+     * The default resolver: the path is a file or an URL and the image is decoded with ImageIO
+     */
+    public static final ImageResolver DEFAULT_RESOLVER = new ImageResolver() {
+
+        public long getStamp(String path) {
+            File f = new File(path);
+            if (f.exists()) {
+                return f.lastModified();
+            }
+            try {
+                new URL(path);
+                return 0;
+            } catch (MalformedURLException e) {
+                return -1;
+            }
+        }
+
+        public BufferedImage getImage(String path) throws IOException {
+            File f = new File(path);
+            if (f.exists()) {
+                return ImageIO.read(f);
+            }
+            return ImageIO.read(new URL(path));
+        }
+    };
+
+    private static final LinkedHashMap<Key, BufferedImage> cache = new LinkedHashMap<Key, BufferedImage>(16, 0.75f, true);
+    private static final HashMap<Key, Future<BufferedImage>> pending = new HashMap<Key, Future<BufferedImage>>();
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+    private static long bytes = 0;
+
+    private static volatile ImageResolver resolver = DEFAULT_RESOLVER;
+    private static volatile boolean asynchronous = false;
+    private static ExecutorService executor;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    private ImageCache() { }
+
+    /**
+     * Set the resolver used to find the images. The cache is cleared.
+     * @param resolver the resolver, or null to use the default one
+     */
+    public static void setImageResolver(ImageResolver resolver) {
+        synchronized (cache) {
+            ImageCache.resolver = resolver == null ? DEFAULT_RESOLVER : resolver;
+            clear();
+        }
+    }
+
+    /**
+     * @return the resolver used to find the images
+     */
+    public static ImageResolver getImageResolver() {
+        return resolver;
+    }
+
+    /**
+     * @param asynchronous if true the parser doesn't wait for the images which are not
+     * in the cache
+     */
+    public static void setAsynchronous(boolean asynchronous) {
+        ImageCache.asynchronous = asynchronous;
+    }
+
+    /**
+     * @return true if the images are loaded in a background thread
+     */
+    public static boolean isAsynchronous() {
+        return asynchronous;
+    }
+
+    /**
+     * Set the max number of bytes used by the decoded images. The least recently used
+     * images are evicted until the cache fits in the new budget.
+     * @param maxBytes the max number of bytes
+     */
+    public static void setMaxCachedBytes(long maxBytes) {
+        synchronized (cache) {
+            ImageCache.maxBytes = Math.max(maxBytes, 0);
+            evict();
+        }
+    }
+
+    /**
+     * @return the max number of bytes used by the decoded images
+     */
+    public static long getMaxCachedBytes() {
+        synchronized (cache) {
+            return maxBytes;
+        }
+    }
+
+    /**
+     * @return the number of bytes currently used by the decoded images
+     */
+    public static long getCachedBytes() {
+        synchronized (cache) {
+            return bytes;
+        }
+    }
+
+    /**
+     * @return the number of cached images
+     */
+    public static int getCachedObjects() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * @return the number of requests which have found their image in the cache
+     */
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of requests which have needed to decode their image
+     */
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of images removed to keep the cache in its bounds
+     */
+    public static long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Reset the hit, miss and eviction counters
+     */
+    public static void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    /**
+     * Clear the cache
+     */
+    public static void clearCache() {
+        synchronized (cache) {
+            clear();
+        }
+    }
+
+    /**
+     * Get an image, the current thread waits for its decoding if it isn't cached.
+     * @param path the path of the image
+     * @return the image or null if there is no such image
+     */
+    public static BufferedImage getImage(String path) {
+        Future<BufferedImage> f = getFuture(path);
+        if (f == null) {
+            return null;
+        }
+        if (f instanceof FutureTask && !f.isDone()) {
+            // decode in the current thread: run() does nothing if the task has already
+            // been started by the executor and get() waits for it
+            ((FutureTask<BufferedImage>) f).run();
+        }
+
+        return get(f);
+    }
+
+    /**
+     * Get an image, it is decoded in a background thread if it isn't cached.
+     * @param path the path of the image
+     * @return a future image or null if there is no such image
+     */
+    public static Future<BufferedImage> getImageLater(String path) {
+        Future<BufferedImage> f = getFuture(path);
+        if (f != null && !f.isDone()) {
+            getExecutor().execute((FutureTask<BufferedImage>) f);
+        }
+
+        return f;
+    }
+
+    /**
+     * @param f a future image
+     * @return the image or null if it can't be decoded
+     */
+    static BufferedImage get(Future<BufferedImage> f) {
+        try {
+            return f.get();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Future<BufferedImage> getFuture(final String path) {
+        final ImageResolver r = resolver;
+        final long stamp = r.getStamp(path);
+        if (stamp == -1) {
+            return null;
+        }
+
+        final Key key = new Key(path, stamp);
+        synchronized (cache) {
+            BufferedImage image = cache.get(key);
+            if (image != null) {
+                hits.incrementAndGet();
+                return new Loaded(image);
+            }
+            Future<BufferedImage> f = pending.get(key);
+            if (f != null) {
+                // the same image is already decoded by an other thread
+                hits.incrementAndGet();
+                return f;
+            }
+            misses.incrementAndGet();
+            FutureTask<BufferedImage> task = new FutureTask<BufferedImage>(new Callable<BufferedImage>() {
+                public BufferedImage call() throws IOException {
+                    BufferedImage image = null;
+                    try {
+                        image = toARGB(r.getImage(path));
+                    } finally {
+                        synchronized (cache) {
+                            pending.remove(key);
+                            if (image != null && r == resolver) {
+                                BufferedImage old = cache.put(key, image);
+                                if (old != null) {
+                                    bytes -= weight(old);
+                                }
+                                bytes += weight(image);
+                                evict();
+                            }
+                        }
+                    }
+                    return image;
+                }
+            });
+            pending.put(key, task);
+
+            return task;
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "jlatexmath-image-loader");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private static BufferedImage toARGB(BufferedImage image) {
+        if (image == null || image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            return image;
+        }
+        BufferedImage argb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = argb.createGraphics();
+        g2d.drawImage(image, 0, 0, null);
+        g2d.dispose();
+
+        return argb;
+    }
+
+    private static long weight(BufferedImage image) {
+        // an ARGB pixel is stored in an int
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    /**
+     * Remove the least recently used images until the cache fits in its bounds.
+     * Must be called with the lock on cache.
+     */
+    private static void evict() {
+        Iterator<BufferedImage> iter = cache.values().iterator();
+        while (bytes > maxBytes && iter.hasNext()) {
+            BufferedImage image = iter.next();
+            iter.remove();
+            bytes -= weight(image);
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Must be called with the lock on cache.
+     */
+    private static void clear() {
+        cache.clear();
+        bytes = 0;
+    }
+
+    private static class Key {
+
+        final String path;
+        final long stamp;
+
+        Key(String path, long stamp) {
+            this.path = path;
+            this.stamp = stamp;
+        }
+
+        public int hashCode() {
+            return path.hashCode() ^ (int) (stamp ^ (stamp >>> 32));
+        }
+
+        public boolean equals(Object o) {
+            if (o instanceof Key) {
+                Key k = (Key) o;
+                return stamp == k.stamp && path.equals(k.path);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A future which is already done.
+     */
+    private static class Loaded implements Future<BufferedImage> {
+
+        final BufferedImage image;
+
+        Loaded(BufferedImage image) {
+            this.image = image;
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+
+        public boolean isDone() {
+            return true;
+        }
+
+        public BufferedImage get() {
+            return image;
+        }
+
+        public BufferedImage get(long timeout, TimeUnit unit) {
+            return image;
+        }
+    }
+}
@@ -47,21 +47,38 @@ package org.scilab.forge.jlatexmath;
 
 import java.awt.Font;
 import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
 import java.awt.font.TextAttribute;
 import java.awt.font.TextLayout;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A box representing a scaled box.
+ * The shaped text runs are cached: a TextLayout is immutable so the same run is shared
+ * by all the boxes (and all the threads) drawing it.
  */
 public class JavaFontRenderingBox extends Box {
 
-    private static final Graphics2D TEMPGRAPHIC = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    /**
+     * Max number of cached text runs
+     */
+    public static final int MAX_CACHED_LAYOUTS = 1024;
 
-    private static Font font = new Font("Serif", Font.PLAIN, 10);
+    private static final FontRenderContext FRC;
+
+    private static volatile Font font = new Font("Serif", Font.PLAIN, 10);
+
+    private static final Map<Font, Font> kerningFonts = new ConcurrentHashMap<Font, Font>();
+    private static final LinkedHashMap<LayoutKey, Layout> layouts = new LinkedHashMap<LayoutKey, Layout>(128, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<LayoutKey, Layout> eldest) {
+            return size() > MAX_CACHED_LAYOUTS;
+        }
+    };
 
     private TextLayout text;
     private float size;
@@ -77,20 +94,19 @@ public class JavaFontRenderingBox extends Box {
             LIGATURES = (TextAttribute) (TextAttribute.class.getField("LIGATURES").get(TextAttribute.class));
             LIGATURES_ON = (Integer) (TextAttribute.class.getField("LIGATURES_ON").get(TextAttribute.class));
         } catch (Exception e) { }
+
+        // a FontRenderContext is immutable: the graphics is not kept
+        Graphics2D g2 = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        FRC = g2.getFontRenderContext();
+        g2.dispose();
     }
 
     public JavaFontRenderingBox(String str, int type, float size, Font f, boolean kerning) {
         this.size = size;
 
-        if (kerning && KERNING != null) {
-            Map<TextAttribute, Object> map = new Hashtable<TextAttribute, Object>();
-            map.put(KERNING, KERNING_ON);
-            map.put(LIGATURES, LIGATURES_ON);
-            f = f.deriveFont(map);
-        }
-
-        this.text = new TextLayout(str, f.deriveFont(type), TEMPGRAPHIC.getFontRenderContext());
-        Rectangle2D rect = text.getBounds();
+        Layout layout = getLayout(str, type, f, kerning && KERNING != null);
+        this.text = layout.text;
+        Rectangle2D rect = layout.bounds;
         this.height = (float) (-rect.getY() * size / 10);
         this.depth = (float) (rect.getHeight() * size / 10) - this.height;
         this.width = (float) ((rect.getWidth() + rect.getX() + 0.4f) * size / 10);
@@ -116,4 +132,88 @@ public class JavaFontRenderingBox extends Box {
     public int getLastFontId() {
         return 0;
     }
+
+    /**
+     * Clear the cached text runs and fonts
+     */
+    public static void clearCache() {
+        synchronized (layouts) {
+            layouts.clear();
+        }
+        kerningFonts.clear();
+    }
+
+    private static Layout getLayout(String str, int type, Font f, boolean kerning) {
+        LayoutKey key = new LayoutKey(str, type, f, kerning);
+        Layout layout;
+        synchronized (layouts) {
+            layout = layouts.get(key);
+        }
+        if (layout == null) {
+            // shaped outside of the lock: a run can be shaped twice by two threads
+            layout = new Layout(new TextLayout(str, getKerningFont(f, kerning).deriveFont(type), FRC));
+            synchronized (layouts) {
+                layouts.put(key, layout);
+            }
+        }
+
+        return layout;
+    }
+
+    private static Font getKerningFont(Font f, boolean kerning) {
+        if (!kerning) {
+            return f;
+        }
+        Font kf = kerningFonts.get(f);
+        if (kf == null) {
+            Map<TextAttribute, Object> map = new Hashtable<TextAttribute, Object>();
+            map.put(KERNING, KERNING_ON);
+            map.put(LIGATURES, LIGATURES_ON);
+            kf = f.deriveFont(map);
+            if (kerningFonts.size() >= MAX_CACHED_LAYOUTS) {
+                kerningFonts.clear();
+            }
+            kerningFonts.put(f, kf);
+        }
+
+        return kf;
+    }
+
+    private static final class Layout {
+
+        final TextLayout text;
+        final Rectangle2D bounds;
+
+        Layout(TextLayout text) {
+            this.text = text;
+            this.bounds = text.getBounds();
+        }
+    }
+
+    private static final class LayoutKey {
+
+        final String str;
+        final int type;
+        final Font font;
+        final boolean kerning;
+
+        LayoutKey(String str, int type, Font font, boolean kerning) {
+            this.str = str;
+            this.type = type;
+            this.font = font;
+            this.kerning = kerning;
+        }
+
+        public int hashCode() {
+            return (str.hashCode() * 31 + font.hashCode()) * 31 + type * 2 + (kerning ? 1 : 0);
+        }
+
+        public boolean equals(Object o) {
+            if (o instanceof LayoutKey) {
+                LayoutKey k = (LayoutKey) o;
+                return type == k.type && kerning == k.kerning && str.equals(k.str) && font.equals(k.font);
+            }
+            return false;
+        }
+    }
 }
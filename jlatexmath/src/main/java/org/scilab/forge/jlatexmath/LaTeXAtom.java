@@ -70,8 +70,8 @@ public class LaTeXAtom extends Atom {
 
         HorizontalBox hb = new HorizontalBox(rat.getLastAtom().createBox(env));
         hb.add(new SpaceAtom(TeXConstants.UNIT_EM, -0.35f * sc, 0, 0).createBox(env));
-        float f = new SpaceAtom(TeXConstants.UNIT_EX, 0.45f * sc, 0, 0).createBox(env).getWidth();
-        float f1 = new SpaceAtom(TeXConstants.UNIT_EX, 0.5f * sc, 0, 0).createBox(env).getWidth();
+        float f = 0.45f * sc * SpaceAtom.getFactor(TeXConstants.UNIT_EX, env);
+        float f1 = 0.5f * sc * SpaceAtom.getFactor(TeXConstants.UNIT_EX, env);
         CharBox A = new CharBox(env.getTeXFont().getChar('A', "mathnormal", env.supStyle().getStyle()));
         A.setShift(-f);
         hb.add(A);
@@ -71,7 +71,7 @@ public class LongdivAtom extends VRowAtom {
                 }
             } else if (i == 1) {
                 String div = Long.toString(divisor);
-                SymbolAtom rparen = SymbolAtom.get(TeXFormula.symbolMappings[')']);
+                SymbolAtom rparen = SymbolAtom.get(TeXFormula.getSymbolMapping(')'));
                 Atom big = new BigDelimiterAtom(rparen, 1);
                 Atom ph = new PhantomAtom(big, false, true, true);
                 RowAtom ra = new RowAtom(ph);
@@ -47,12 +47,13 @@ package org.scilab.forge.jlatexmath;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MacroInfo {
 
-    public static HashMap<String, MacroInfo> Commands = new HashMap<String, MacroInfo>(300);
-    public static HashMap<String, Object> Packages = new HashMap<String, Object>();
+    public static Map<String, MacroInfo> Commands = new ConcurrentHashMap<String, MacroInfo>(300);
+    public static Map<String, Object> Packages = new ConcurrentHashMap<String, Object>();
 
     public Object pack;
     public Method macro;
@@ -134,6 +135,9 @@ public class MacroInfo {
             throw new ParseException("Problem with command " + args[0] + " at position " + tp.getLine() + ":" + tp.getCol() + "\n", e);
         } catch (InvocationTargetException e) {
             Throwable th = e.getCause();
+            if (th instanceof FrozenContextException) {
+                throw (FrozenContextException) th;
+            }
             throw new ParseException("Problem with command " + args[0] + " at position " + tp.getLine() + ":" + tp.getCol() + "\n" + th.getMessage());
         }
     }
@@ -45,65 +45,113 @@
 
 package org.scilab.forge.jlatexmath;
 
-import java.util.HashMap;
-import java.util.regex.Matcher;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class NewCommandMacro {
 
-    protected static HashMap<String, String> macrocode = new HashMap<String, String>();
-    protected static HashMap<String, String> macroreplacement = new HashMap<String, String>();
+    protected static Map<String, String> macrocode = new ConcurrentHashMap<String, String>();
+    protected static Map<String, String> macroreplacement = new ConcurrentHashMap<String, String>();
 
     public NewCommandMacro() {
     }
 
     public static void addNewCommand(String name, String code, int nbargs) throws ParseException {
-        //if (macrocode.get(name) != null)
+        addNewCommand(TeXContext.getDefault(), name, code, nbargs);
+    }
+
+    public static void addNewCommand(TeXContext context, String name, String code, int nbargs) throws ParseException {
+        //if (context.getMacroCode(name) != null)
         //throw new ParseException("Command " + name + " already exists ! Use renewcommand instead ...");
-        macrocode.put(name, code);
-        MacroInfo.Commands.put(name, new MacroInfo("org.scilab.forge.jlatexmath.NewCommandMacro", "executeMacro", nbargs));
+        context.putMacro(name, code, null, new MacroInfo("org.scilab.forge.jlatexmath.NewCommandMacro", "executeMacro", nbargs));
     }
 
     public static void addNewCommand(String name, String code, int nbargs, String def) throws ParseException {
-        if (macrocode.get(name) != null)
+        addNewCommand(TeXContext.getDefault(), name, code, nbargs, def);
+    }
+
+    public static void addNewCommand(TeXContext context, String name, String code, int nbargs, String def) throws ParseException {
+        if (context.getMacroCode(name) != null)
             throw new ParseException("Command " + name + " already exists ! Use renewcommand instead ...");
-        macrocode.put(name, code);
-        macroreplacement.put(name, def);
-        MacroInfo.Commands.put(name, new MacroInfo("org.scilab.forge.jlatexmath.NewCommandMacro", "executeMacro", nbargs, 1));
+        context.putMacro(name, code, def, new MacroInfo("org.scilab.forge.jlatexmath.NewCommandMacro", "executeMacro", nbargs, 1));
     }
 
     public static boolean isMacro(String name) {
         return macrocode.containsKey(name);
     }
 
+    public static boolean isMacro(TeXContext context, String name) {
+        return context.getMacroCode(name) != null;
+    }
+
     public static void addReNewCommand(String name, String code, int nbargs) {
-        if (macrocode.get(name) == null)
+        addReNewCommand(TeXContext.getDefault(), name, code, nbargs);
+    }
+
+    public static void addReNewCommand(TeXContext context, String name, String code, int nbargs) {
+        if (context.getMacroCode(name) == null)
             throw new ParseException("Command " + name + " is not defined ! Use newcommand instead ...");
-        macrocode.put(name, code);
-        MacroInfo.Commands.put(name, new MacroInfo("org.scilab.forge.jlatexmath.NewCommandMacro", "executeMacro", nbargs));
+        context.putMacro(name, code, null, new MacroInfo("org.scilab.forge.jlatexmath.NewCommandMacro", "executeMacro", nbargs));
     }
 
     public String executeMacro(TeXParser tp, String[] args) {
-        String code = macrocode.get(args[0]);
-        String rep;
+        TeXContext context = tp.getContext();
+        String code = context.getMacroCode(args[0]);
         int nbargs = args.length - 11;
-        int dec = 0;
+        // the option or the default value of the first argument
+        String first = args[nbargs + 1] != null ? args[nbargs + 1] : context.getMacroReplacement(args[0]);
 
+        return replaceArgs(code, args, nbargs, first);
+    }
 
-        if (args[nbargs + 1] != null) {
-            dec = 1;
-            rep = Matcher.quoteReplacement(args[nbargs + 1]);
-            code = code.replaceAll("#1", rep);
-        } else if (macroreplacement.get(args[0]) != null) {
-            dec = 1;
-            rep = Matcher.quoteReplacement(macroreplacement.get(args[0]));
-            code = code.replaceAll("#1", rep);
+    /**
+     * Replace #1, #2, ... by the arguments in one pass: the text of an argument is never rescanned.
+     * @param code the code of the macro
+     * @param args the arguments, args[1] is the first one
+     * @param nbargs the number of arguments
+     * @param first if not null, the value of #1 and then args[i] is the value of #(i + 1)
+     * @return the code where the arguments are replaced
+     */
+    static String replaceArgs(String code, String[] args, int nbargs, String first) {
+        final int dec = first == null ? 0 : 1;
+        final int max = nbargs + dec;
+        final int len = code.length();
+        int start = 0;
+        int i = code.indexOf('#');
+        if (i == -1) {
+            return code;
         }
 
-        for (int i = 1; i <= nbargs; i++) {
-            rep = Matcher.quoteReplacement(args[i]);
-            code = code.replaceAll("#" + (i + dec), rep);
+        StringBuilder buf = new StringBuilder(len + 16 * max);
+        for (; i != -1; i = code.indexOf('#', i)) {
+            int n = i + 1 < len ? digit(code.charAt(i + 1)) : -1;
+            if (n < 1 || n > max) {
+                i++;
+                continue;
+            }
+            int end = i + 2;
+            if (end < len) {
+                // an environment with 9 arguments has #10 for its content
+                final int d = digit(code.charAt(end));
+                if (d != -1 && 10 * n + d <= max) {
+                    n = 10 * n + d;
+                    end++;
+                }
+            }
+            final String arg = n <= dec ? first : args[n - dec];
+            if (arg == null) {
+                throw new ParseException("Missing argument #" + n);
+            }
+            buf.append(code, start, i);
+            buf.append(arg);
+            start = i = end;
         }
+        buf.append(code, start, len);
+
+        return buf.toString();
+    }
 
-        return code;
+    private static int digit(char c) {
+        return c >= '0' && c <= '9' ? c - '0' : -1;
     }
 }
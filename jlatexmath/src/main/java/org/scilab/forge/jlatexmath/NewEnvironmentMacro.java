@@ -51,14 +51,22 @@ public class NewEnvironmentMacro extends NewCommandMacro {
     }
 
     public static void addNewEnvironment(String name, String begdef, String enddef, int nbArgs) throws ParseException {
-        //if (macrocode.get(name + "@env") != null)
+        addNewEnvironment(TeXContext.getDefault(), name, begdef, enddef, nbArgs);
+    }
+
+    public static void addNewEnvironment(TeXContext context, String name, String begdef, String enddef, int nbArgs) throws ParseException {
+        //if (context.getMacroCode(name + "@env") != null)
         //throw new ParseException("Environment " + name + " already exists ! Use renewenvironment instead ...");
-        addNewCommand(name + "@env", begdef + " #" + (nbArgs + 1) + " " + enddef, nbArgs + 1);
+        addNewCommand(context, name + "@env", begdef + " #" + (nbArgs + 1) + " " + enddef, nbArgs + 1);
     }
 
     public static void addReNewEnvironment(String name, String begdef, String enddef, int nbArgs) throws ParseException {
-        if (macrocode.get(name + "@env") == null)
+        addReNewEnvironment(TeXContext.getDefault(), name, begdef, enddef, nbArgs);
+    }
+
+    public static void addReNewEnvironment(TeXContext context, String name, String begdef, String enddef, int nbArgs) throws ParseException {
+        if (context.getMacroCode(name + "@env") == null)
             throw new ParseException("Environment " + name + "is not defined ! Use newenvironment instead ...");
-        addReNewCommand(name + "@env", begdef + " #" + (nbArgs + 1) + " " + enddef, nbArgs + 1);
+        addReNewCommand(context, name + "@env", begdef + " #" + (nbArgs + 1) + " " + enddef, nbArgs + 1);
     }
 }
@@ -134,6 +134,41 @@ public class OverUnderBox extends Box {
         }
     }
 
+    void paint(BoxPainter p, float x, float y) {
+        if (!p.canTransform()) {
+            p.fallback(this, x, y);
+            return;
+        }
+        base.paint(p, x, y);
+
+        float yVar = y - base.height - del.getWidth();
+        del.setDepth(del.getHeight() + del.getDepth());
+        del.setHeight(0);
+        if (over) {
+            AffineTransform at = AffineTransform.getTranslateInstance(x + (del.height + del.depth) * 0.75, yVar);
+            at.rotate(Math.PI / 2);
+            p.save(at);
+            del.paint(p, 0, 0);
+            p.restore();
+            if (script != null) {
+                script.paint(p, x, yVar - kern - script.depth);
+            }
+        }
+
+        yVar = y + base.depth;
+        if (!over) {
+            AffineTransform at = AffineTransform.getTranslateInstance(x + (del.getHeight() + del.depth) * 0.75, yVar);
+            at.rotate(Math.PI / 2);
+            p.save(at);
+            del.paint(p, 0, 0);
+            p.restore();
+            yVar += del.getWidth();
+            if (script != null) {
+                script.paint(p, x, yVar + kern + script.height);
+            }
+        }
+    }
+
     public int getLastFontId() {
         return base.getLastFontId();
     }
@@ -0,0 +1,339 @@
+/* ParseBuffer.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.util.Arrays;
+
+/**
+ * The text read by a TeXParser.
+ * The parser expands the macros by replacing their call with their code just before the
+ * current position, so the text is kept in a gap buffer: the gap follows the last replacement
+ * and a replacement costs only the length of the new text and the distance from the previous
+ * one, whatever the length of the whole text.
+ * The given CharSequence is not copied until the first replacement.
+ * <p>
+ * The closing delimiter of a group is found with a table built once for the whole text, so
+ * a group is not scanned again at each nesting level. The tables are shared with the buffers
+ * created on the returned groups (see {@link #sub(String)}): a sub-parser parsing an argument
+ * does not scan it again either.
+ */
+final class ParseBuffer implements CharSequence {
+
+    // an entry of a table for a character which is not an unescaped opening delimiter
+    private static final int NOT_OPEN = -2;
+    private static final int RECENT = 16;
+
+    private CharSequence seq;
+    private char[] buf;
+    private int gapStart;
+    private int gapEnd;
+    private int length;
+
+    // index of the closing delimiter of each { and [ (or -1): the index i in this buffer
+    // is the index i + offset in the tables. They are dropped when the text is modified.
+    private int[] braces;
+    private int[] brackets;
+    private int bracesOffset;
+    private int bracketsOffset;
+    // number of characters scanned without table since the last modification
+    private int scanned;
+
+    // the last returned groups
+    private Group[] recent;
+    private int recentPos;
+
+    ParseBuffer(CharSequence seq) {
+        this.seq = seq;
+        this.length = seq.length();
+    }
+
+    private ParseBuffer(String seq, Group group) {
+        this(seq);
+        this.braces = group.braces;
+        this.brackets = group.brackets;
+        this.bracesOffset = group.bracesOffset;
+        this.bracketsOffset = group.bracketsOffset;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public char charAt(int i) {
+        if (seq != null) {
+            return seq.charAt(i);
+        }
+        if (i < 0 || i >= length) {
+            throw new StringIndexOutOfBoundsException(i);
+        }
+        return i < gapStart ? buf[i] : buf[i + gapEnd - gapStart];
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        return substring(start, end);
+    }
+
+    public String substring(int start) {
+        return substring(start, length);
+    }
+
+    public String substring(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new StringIndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        if (seq != null) {
+            return seq.subSequence(start, end).toString();
+        }
+        if (end <= gapStart) {
+            return new String(buf, start, end - start);
+        }
+        final int gap = gapEnd - gapStart;
+        if (start >= gapStart) {
+            return new String(buf, start + gap, end - start);
+        }
+        final StringBuilder sb = new StringBuilder(end - start);
+        sb.append(buf, start, gapStart - start);
+        sb.append(buf, gapEnd, end - gapStart);
+        return sb.toString();
+    }
+
+    /**
+     * Replace the characters between start and end by str.
+     */
+    public void replace(int start, int end, String str) {
+        if (start < 0 || end > length || start > end) {
+            throw new StringIndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        final int n = str.length();
+        braces = brackets = null;
+        scanned = 0;
+        recent = null;
+        if (seq != null) {
+            toBuffer(start, end, n);
+        } else {
+            moveGap(end);
+            gapStart = start;
+            ensureGap(n);
+        }
+        str.getChars(0, n, buf, gapStart);
+        gapStart += n;
+        length += n - (end - start);
+    }
+
+    /**
+     * @param start the index of an opening delimiter
+     * @return the index of the matching closing delimiter or -1 if the group is not closed
+     */
+    public int findClose(int start, char open, char close) {
+        final boolean brace = open == '{' && close == '}';
+        final boolean bracket = open == '[' && close == ']';
+        final int[] table = brace ? braces : (bracket ? brackets : null);
+        final int offset = brace ? bracesOffset : bracketsOffset;
+        if (table != null) {
+            final int m = table[start + offset];
+            if (m != NOT_OPEN) {
+                // in a shared table, a [ in a {...} group can be closed after the group
+                return m == -1 || m - offset >= length ? -1 : m - offset;
+            }
+        }
+
+        final int m = scan(start, open, close);
+        // building the table costs about the same as scanning the whole text once: it is
+        // done when a large part of the text has been scanned, e.g. for a group containing
+        // most of the text which would be scanned again by the sub-parser
+        if ((brace || bracket) && table == null && 2 * scanned > length) {
+            if (brace) {
+                braces = buildTable(open, close);
+                bracesOffset = 0;
+            } else {
+                brackets = buildTable(open, close);
+                bracketsOffset = 0;
+            }
+        }
+
+        return m;
+    }
+
+    /**
+     * @return the text between start and end, a buffer created with sub() on it will use the same tables
+     */
+    public String group(int start, int end) {
+        final String str = substring(start, end);
+        if (braces != null || brackets != null) {
+            if (recent == null) {
+                recent = new Group[RECENT];
+            }
+            recent[recentPos] = new Group(str, braces, start + bracesOffset, brackets, start + bracketsOffset);
+            recentPos = (recentPos + 1) % RECENT;
+        }
+        return str;
+    }
+
+    /**
+     * @return a buffer on a string which may have been returned by group()
+     */
+    public ParseBuffer sub(String str) {
+        if (recent != null) {
+            for (Group g : recent) {
+                if (g != null && g.str == str) {
+                    return new ParseBuffer(str, g);
+                }
+            }
+        }
+        return new ParseBuffer(str);
+    }
+
+    private int scan(int start, char open, char close) {
+        int group = 1;
+        int p = start;
+        while (p < length - 1 && group != 0) {
+            p++;
+            final char ch = charAt(p);
+            if (ch == open) {
+                group++;
+            } else if (ch == close) {
+                group--;
+            } else if (ch == '\\' && p != length - 1) {
+                p++;
+            }
+        }
+        scanned += p - start;
+
+        return group == 0 ? p : -1;
+    }
+
+    private int[] buildTable(char open, char close) {
+        final int[] table = new int[length];
+        Arrays.fill(table, NOT_OPEN);
+        int[] stack = new int[16];
+        int top = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = charAt(i);
+            if (ch == open) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * top);
+                }
+                stack[top++] = i;
+                table[i] = -1;
+            } else if (ch == close) {
+                if (top != 0) {
+                    table[stack[--top]] = i;
+                }
+            } else if (ch == '\\' && i != length - 1) {
+                i++;
+            }
+        }
+        return table;
+    }
+
+    public void delete(int start, int end) {
+        replace(start, end, "");
+    }
+
+    public String toString() {
+        return substring(0, length);
+    }
+
+    /**
+     * Copy the sequence in the buffer, the gap is put between start and end.
+     */
+    private void toBuffer(int start, int end, int n) {
+        final int tail = length - end;
+        buf = new char[Math.max(start + n + tail + 16, (start + n + tail) * 3 / 2)];
+        for (int i = 0; i < start; i++) {
+            buf[i] = seq.charAt(i);
+        }
+        gapStart = start;
+        gapEnd = buf.length - tail;
+        for (int i = 0; i < tail; i++) {
+            buf[gapEnd + i] = seq.charAt(end + i);
+        }
+        seq = null;
+    }
+
+    private void moveGap(int p) {
+        if (p < gapStart) {
+            final int n = gapStart - p;
+            System.arraycopy(buf, p, buf, gapEnd - n, n);
+            gapStart = p;
+            gapEnd -= n;
+        } else if (p > gapStart) {
+            final int n = p - gapStart;
+            System.arraycopy(buf, gapEnd, buf, gapStart, n);
+            gapStart = p;
+            gapEnd += n;
+        }
+    }
+
+    private void ensureGap(int n) {
+        if (gapEnd - gapStart < n) {
+            final int tail = buf.length - gapEnd;
+            final int used = gapStart + tail;
+            final char[] newBuf = new char[Math.max(used + n + 16, (used + n) * 3 / 2)];
+            System.arraycopy(buf, 0, newBuf, 0, gapStart);
+            System.arraycopy(buf, gapEnd, newBuf, newBuf.length - tail, tail);
+            gapEnd = newBuf.length - tail;
+            buf = newBuf;
+        }
+    }
+
+    private static final class Group {
+
+        final String str;
+        final int[] braces;
+        final int bracesOffset;
+        final int[] brackets;
+        final int bracketsOffset;
+
+        Group(String str, int[] braces, int bracesOffset, int[] brackets, int bracketsOffset) {
+            this.str = str;
+            this.braces = braces;
+            this.bracesOffset = bracesOffset;
+            this.brackets = brackets;
+            this.bracketsOffset = bracketsOffset;
+        }
+    }
+}
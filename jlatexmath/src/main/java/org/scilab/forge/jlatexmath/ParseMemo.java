@@ -0,0 +1,117 @@
+/* ParseMemo.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The groups parsed for the previous version of an edited formula: when the formula is
+ * parsed again, a group <code>{...}</code> whose source has not changed is not parsed
+ * again and its atoms are shared. The key is the source of the group and the state of
+ * the parser, each atom is used at most once by a parse.
+ */
+final class ParseMemo {
+
+    private Map<String, RowAtom> previous = new HashMap<String, RowAtom>();
+    private Map<String, RowAtom> current = new HashMap<String, RowAtom>();
+    private final TeXContext context;
+    private long generation;
+    private int hits;
+    private int misses;
+
+    ParseMemo(TeXContext context) {
+        this.context = context;
+        this.generation = context.getGeneration();
+    }
+
+    /**
+     * Start a new parse, the groups are dropped when a definition has changed since the last one
+     */
+    void begin() {
+        final long g = context.getGeneration();
+        if (g != generation) {
+            generation = g;
+            previous.clear();
+            current.clear();
+        }
+    }
+
+    /**
+     * End a parse: the groups which were not used are dropped, unless the parse failed
+     */
+    void end(boolean ok) {
+        if (ok) {
+            previous = current;
+        } else {
+            previous.putAll(current);
+        }
+        current = new HashMap<String, RowAtom>();
+    }
+
+    RowAtom take(String key) {
+        final RowAtom row = previous.remove(key);
+        if (row == null) {
+            misses++;
+        } else {
+            hits++;
+            current.put(key, row);
+        }
+        return row;
+    }
+
+    void put(String key, RowAtom row) {
+        current.put(key, row);
+    }
+
+    int getHits() {
+        return hits;
+    }
+
+    int getMisses() {
+        return misses;
+    }
+}
@@ -723,21 +723,22 @@ public class PredefMacros {
     }
 
     public static final Atom nolimits_macro(final TeXParser tp, final String[] args) throws ParseException {
-        Atom at = tp.getLastAtom();
+        // the last atom can be shared (e.g. a symbol)
+        Atom at = tp.getLastAtom().clone();
         at.type_limits = TeXConstants.SCRIPT_NOLIMITS;
-        return at.clone();
+        return at;
     }
 
     public static final Atom limits_macro(final TeXParser tp, final String[] args) throws ParseException {
-        Atom at = tp.getLastAtom();
+        Atom at = tp.getLastAtom().clone();
         at.type_limits = TeXConstants.SCRIPT_LIMITS;
-        return at.clone();
+        return at;
     }
 
     public static final Atom normal_macro(final TeXParser tp, final String[] args) throws ParseException {
-        Atom at = tp.getLastAtom();
+        Atom at = tp.getLastAtom().clone();
         at.type_limits = TeXConstants.SCRIPT_NORMAL;
-        return at.clone();
+        return at;
     }
 
     public static final Atom left_macro(final TeXParser tp, final String[] args) throws ParseException {
@@ -781,7 +782,7 @@ public class PredefMacros {
             ArrayOfAtoms array = new ArrayOfAtoms();
             array.add(tp.formula.root);
             array.addRow();
-            TeXParser parser = new TeXParser(tp.getIsPartial(), tp.getStringFromCurrentPos(), array, false, tp.isIgnoreWhiteSpace());
+            TeXParser parser = new TeXParser(tp, tp.getStringFromCurrentPos(), array, false, tp.isIgnoreWhiteSpace());
             parser.parse();
             array.checkDimensions();
             tp.finish();
@@ -811,7 +812,7 @@ public class PredefMacros {
 
     public static final Atom smallmatrixATATenv_macro(final TeXParser tp, final String[] args) throws ParseException {
         ArrayOfAtoms array = new ArrayOfAtoms();
-        TeXParser parser = new TeXParser(tp.getIsPartial(), args[1], array, false);
+        TeXParser parser = new TeXParser(tp, args[1], array, false);
         parser.parse();
         array.checkDimensions();
         return new MatrixAtom(tp.getIsPartial(), array, MatrixAtom.SMALLMATRIX);
@@ -819,7 +820,7 @@ public class PredefMacros {
 
     public static final Atom matrixATATenv_macro(final TeXParser tp, final String[] args) throws ParseException {
         ArrayOfAtoms array = new ArrayOfAtoms();
-        TeXParser parser = new TeXParser(tp.getIsPartial(), args[1], array, false);
+        TeXParser parser = new TeXParser(tp, args[1], array, false);
         parser.parse();
         array.checkDimensions();
         return new MatrixAtom(tp.getIsPartial(), array, MatrixAtom.MATRIX);
@@ -845,7 +846,7 @@ public class PredefMacros {
 
     public static final Atom arrayATATenv_macro(final TeXParser tp, final String[] args) throws ParseException {
         ArrayOfAtoms array = new ArrayOfAtoms();
-        TeXParser parser = new TeXParser(tp.getIsPartial(), args[2], array, false);
+        TeXParser parser = new TeXParser(tp, args[2], array, false);
         parser.parse();
         array.checkDimensions();
         return new MatrixAtom(tp.getIsPartial(), array, args[1], true);
@@ -853,7 +854,7 @@ public class PredefMacros {
 
     public static final Atom alignATATenv_macro(final TeXParser tp, final String[] args) throws ParseException {
         ArrayOfAtoms array = new ArrayOfAtoms();
-        TeXParser parser = new TeXParser(tp.getIsPartial(), args[1], array, false);
+        TeXParser parser = new TeXParser(tp, args[1], array, false);
         parser.parse();
         array.checkDimensions();
         return new MatrixAtom(tp.getIsPartial(), array, MatrixAtom.ALIGN);
@@ -861,7 +862,7 @@ public class PredefMacros {
 
     public static final Atom flalignATATenv_macro(final TeXParser tp, final String[] args) throws ParseException {
         ArrayOfAtoms array = new ArrayOfAtoms();
-        TeXParser parser = new TeXParser(tp.getIsPartial(), args[1], array, false);
+        TeXParser parser = new TeXParser(tp, args[1], array, false);
         parser.parse();
         array.checkDimensions();
         return new MatrixAtom(tp.getIsPartial(), array, MatrixAtom.FLALIGN);
@@ -869,7 +870,7 @@ public class PredefMacros {
 
     public static final Atom alignatATATenv_macro(final TeXParser tp, final String[] args) throws ParseException {
         ArrayOfAtoms array = new ArrayOfAtoms();
-        TeXParser parser = new TeXParser(tp.getIsPartial(), args[2], array, false);
+        TeXParser parser = new TeXParser(tp, args[2], array, false);
         parser.parse();
         array.checkDimensions();
         int n = Integer.parseInt(args[1]);
@@ -882,7 +883,7 @@ public class PredefMacros {
 
     public static final Atom alignedATATenv_macro(final TeXParser tp, final String[] args) throws ParseException {
         ArrayOfAtoms array = new ArrayOfAtoms();
-        TeXParser parser = new TeXParser(tp.getIsPartial(), args[1], array, false);
+        TeXParser parser = new TeXParser(tp, args[1], array, false);
         parser.parse();
         array.checkDimensions();
         return new MatrixAtom(tp.getIsPartial(), array, MatrixAtom.ALIGNED);
@@ -890,7 +891,7 @@ public class PredefMacros {
 
     public static final Atom alignedatATATenv_macro(final TeXParser tp, final String[] args) throws ParseException {
         ArrayOfAtoms array = new ArrayOfAtoms();
-        TeXParser parser = new TeXParser(tp.getIsPartial(), args[2], array, false);
+        TeXParser parser = new TeXParser(tp, args[2], array, false);
         parser.parse();
         array.checkDimensions();
         int n = Integer.parseInt(args[1]);
@@ -903,7 +904,7 @@ public class PredefMacros {
 
     public static final Atom multlineATATenv_macro(final TeXParser tp, final String[] args) throws ParseException {
         ArrayOfAtoms array = new ArrayOfAtoms();
-        TeXParser parser = new TeXParser(tp.getIsPartial(), args[1], array, false);
+        TeXParser parser = new TeXParser(tp, args[1], array, false);
         parser.parse();
         array.checkDimensions();
         if (array.col > 1) {
@@ -918,7 +919,7 @@ public class PredefMacros {
 
     public static final Atom gatherATATenv_macro(final TeXParser tp, final String[] args) throws ParseException {
         ArrayOfAtoms array = new ArrayOfAtoms();
-        TeXParser parser = new TeXParser(tp.getIsPartial(), args[1], array, false);
+        TeXParser parser = new TeXParser(tp, args[1], array, false);
         parser.parse();
         array.checkDimensions();
         if (array.col > 1) {
@@ -933,7 +934,7 @@ public class PredefMacros {
 
     public static final Atom gatheredATATenv_macro(final TeXParser tp, final String[] args) throws ParseException {
         ArrayOfAtoms array = new ArrayOfAtoms();
-        TeXParser parser = new TeXParser(tp.getIsPartial(), args[1], array, false);
+        TeXParser parser = new TeXParser(tp, args[1], array, false);
         parser.parse();
         array.checkDimensions();
         if (array.col > 1) {
@@ -975,9 +976,9 @@ public class PredefMacros {
         }
 
         if (args[4] == null)
-            NewCommandMacro.addNewCommand(newcom.substring(1), args[2], nbArgs.intValue());
+            NewCommandMacro.addNewCommand(tp.getContext(), newcom.substring(1), args[2], nbArgs.intValue());
         else
-            NewCommandMacro.addNewCommand(newcom.substring(1), args[2], nbArgs.intValue(), args[4]);
+            NewCommandMacro.addNewCommand(tp.getContext(), newcom.substring(1), args[2], nbArgs.intValue(), args[4]);
 
         return null;
     }
@@ -997,7 +998,7 @@ public class PredefMacros {
         if (nbArgs == null)
             throw new ParseException("The optional argument should be an integer !");
 
-        NewCommandMacro.addReNewCommand(newcom.substring(1), args[2], nbArgs.intValue());
+        NewCommandMacro.addReNewCommand(tp.getContext(), newcom.substring(1), args[2], nbArgs.intValue());
 
         return null;
     }
@@ -1017,7 +1018,7 @@ public class PredefMacros {
         if (opt == null)
             throw new ParseException("The optional argument should be an integer !");
 
-        NewEnvironmentMacro.addNewEnvironment(args[1], args[2], args[3], opt.intValue());
+        NewEnvironmentMacro.addNewEnvironment(tp.getContext(), args[1], args[2], args[3], opt.intValue());
         return null;
     }
 
@@ -1026,7 +1027,7 @@ public class PredefMacros {
         if (opt == null)
             throw new ParseException("The optional argument should be an integer !");
 
-        NewEnvironmentMacro.addReNewEnvironment(args[1], args[2], args[3], opt.intValue());
+        NewEnvironmentMacro.addReNewEnvironment(tp.getContext(), args[1], args[2], args[3], opt.intValue());
         return null;
     }
 
@@ -1035,7 +1036,7 @@ public class PredefMacros {
     }
 
     public static final Atom questeq_macro(final TeXParser tp, final String[] args) throws ParseException {
-        Atom at = new UnderOverAtom(SymbolAtom.get(TeXFormula.symbolMappings['=']), new ScaleAtom(SymbolAtom.get(TeXFormula.symbolMappings['?']), 0.75f), TeXConstants.UNIT_MU, 2.5f, true, true);
+        Atom at = new UnderOverAtom(SymbolAtom.get(TeXFormula.getSymbolMapping('=')), new ScaleAtom(SymbolAtom.get(TeXFormula.getSymbolMapping('?')), 0.75f), TeXConstants.UNIT_MU, 2.5f, true, true);
         return new TypedAtom(TeXConstants.TYPE_RELATION, TeXConstants.TYPE_RELATION, at);
     }
 
@@ -1341,13 +1342,13 @@ public class PredefMacros {
         } else
             throw new ParseException("The color model is incorrect !");
 
-        ColorAtom.Colors.put(args[1], color);
+        tp.getContext().putColor(args[1], color);
         return null;
     }
 
     public static final Atom fgcolor_macro(final TeXParser tp, final String[] args) throws ParseException {
         try {
-            return new ColorAtom(new TeXFormula(tp, args[2]).root, null, ColorAtom.getColor(args[1]));
+            return new ColorAtom(new TeXFormula(tp, args[2]).root, null, ColorAtom.getColor(args[1], tp.getContext()));
         } catch (NumberFormatException e) {
             throw new ParseException(e.toString());
         }
@@ -1355,23 +1356,23 @@ public class PredefMacros {
 
     public static final Atom bgcolor_macro(final TeXParser tp, final String[] args) throws ParseException {
         try {
-            return new ColorAtom(new TeXFormula(tp, args[2]).root, ColorAtom.getColor(args[1]), null);
+            return new ColorAtom(new TeXFormula(tp, args[2]).root, ColorAtom.getColor(args[1], tp.getContext()), null);
         } catch (NumberFormatException e) {
             throw new ParseException(e.toString());
         }
     }
 
     public static final Atom textcolor_macro(final TeXParser tp, final String[] args) throws ParseException {
-        return new ColorAtom(new TeXFormula(tp, args[2]).root, null, ColorAtom.getColor(args[1]));
+        return new ColorAtom(new TeXFormula(tp, args[2]).root, null, ColorAtom.getColor(args[1], tp.getContext()));
     }
 
     public static final Atom colorbox_macro(final TeXParser tp, final String[] args) throws ParseException {
-        Color c = ColorAtom.getColor(args[1]);
+        Color c = ColorAtom.getColor(args[1], tp.getContext());
         return new FBoxAtom(new TeXFormula(tp, args[2]).root, c, c);
     }
 
     public static final Atom fcolorbox_macro(final TeXParser tp, final String[] args) throws ParseException {
-        return new FBoxAtom(new TeXFormula(tp, args[3]).root, ColorAtom.getColor(args[2]), ColorAtom.getColor(args[1]));
+        return new FBoxAtom(new TeXFormula(tp, args[3]).root, ColorAtom.getColor(args[2], tp.getContext()), ColorAtom.getColor(args[1], tp.getContext()));
     }
 
     public static final Atom cong_macro(final TeXParser tp, final String[] args) throws ParseException {
@@ -1688,6 +1689,12 @@ public class PredefMacros {
             radix = 8;
         }
         int n = Integer.parseInt(number, radix);
+        if (n >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            Atom at = tp.convertCodePoint(n);
+            if (at != null) {
+                return at;
+            }
+        }
         return tp.convertCharacter((char) n, true);
     }
 
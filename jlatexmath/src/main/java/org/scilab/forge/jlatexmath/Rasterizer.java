@@ -0,0 +1,347 @@
+/* Rasterizer.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Draw a TeXIcon directly in the pixels of an ARGB image.
+ * The characters are copied from a cache of antialiased glyph masks and the rules are
+ * filled without Java2D. The boxes which are not handled (rotated, scaled, framed, ...)
+ * are drawn with Java2D in the same image, so the result is close to the one of
+ * {@link TeXIcon#paintIcon}.
+ */
+public final class Rasterizer extends BoxPainter {
+
+    /**
+     * Default max number of cached glyph masks
+     */
+    public static final int DEFAULT_MAX_GLYPHS = 4096;
+
+    // the glyphs are positioned with a precision of 1/SUBPIXELS pixel
+    private static final int SUBPIXELS = 4;
+    private static final int PAD = 2;
+
+    private static int maxGlyphs = DEFAULT_MAX_GLYPHS;
+    private static final LinkedHashMap<GlyphKey, Mask> masks = new LinkedHashMap<GlyphKey, Mask>(256, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<GlyphKey, Mask> eldest) {
+            return size() > maxGlyphs;
+        }
+    };
+
+    private final BufferedImage image;
+    private final int[] data;
+    private final int offset;
+    private final int scan;
+    private final int width;
+    private final int height;
+    private final float size;
+
+    private int rgb;
+    private int alpha;
+    private Graphics2D g2;
+
+    private Rasterizer(BufferedImage image, float size, Color color) {
+        WritableRaster raster = image.getRaster();
+        this.image = image;
+        this.data = ((DataBufferInt) raster.getDataBuffer()).getData();
+        this.offset = raster.getDataBuffer().getOffset();
+        this.scan = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.size = size;
+        setColor(color);
+    }
+
+    /**
+     * Create a transparent ARGB image and draw the icon inside.
+     * @param icon the icon to draw
+     * @return the image
+     */
+    public static BufferedImage createImage(TeXIcon icon) {
+        BufferedImage image = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+        paint(icon, image, 0, 0);
+
+        return image;
+    }
+
+    /**
+     * Draw an icon in an image. If the image is not a TYPE_INT_ARGB one, the icon is
+     * painted with Java2D.
+     * @param icon the icon to draw
+     * @param image the image
+     * @param x the x coordinate of the icon in the image
+     * @param y the y coordinate of the icon in the image
+     */
+    public static void paint(TeXIcon icon, BufferedImage image, int x, int y) {
+        WritableRaster raster = image.getRaster();
+        if (Box.DEBUG || image.getType() != BufferedImage.TYPE_INT_ARGB || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) {
+            Graphics2D g2 = image.createGraphics();
+            icon.paintIcon(null, g2, x, y);
+            g2.dispose();
+            return;
+        }
+
+        float size = icon.getSize();
+        Color fg = icon.getForeground();
+        Rasterizer r = new Rasterizer(image, size, fg == null ? Color.BLACK : fg);
+        Insets insets = icon.getInsets();
+        Box box = icon.getBox();
+        box.paint(r, (x + insets.left) / size, (y + insets.top) / size + box.getHeight());
+        if (r.g2 != null) {
+            r.g2.dispose();
+        }
+    }
+
+    /**
+     * Set the max number of cached glyph masks
+     * @param max the max number
+     */
+    public static void setMaxCachedGlyphs(int max) {
+        synchronized (masks) {
+            maxGlyphs = Math.max(max, 1);
+            masks.clear();
+        }
+    }
+
+    /**
+     * @return the number of cached glyph masks
+     */
+    public static int getCachedGlyphs() {
+        synchronized (masks) {
+            return masks.size();
+        }
+    }
+
+    /**
+     * Clear the cache of glyph masks
+     */
+    public static void clearCache() {
+        synchronized (masks) {
+            masks.clear();
+        }
+    }
+
+    void setColor(Color c) {
+        color = c;
+        rgb = c.getRGB() & 0xFFFFFF;
+        alpha = c.getAlpha();
+    }
+
+    void fallback(Box box, float x, float y) {
+        if (g2 == null) {
+            g2 = image.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.scale(size, size);
+        }
+        g2.setColor(color);
+        box.draw(g2, x, y);
+    }
+
+    void fillRect(float x, float y, float w, float h) {
+        if (w < 0) {
+            x += w;
+            w = -w;
+        }
+        if (h < 0) {
+            y += h;
+            h = -h;
+        }
+        double x0 = x * (double) size, x1 = (x + w) * (double) size;
+        double y0 = y * (double) size, y1 = (y + h) * (double) size;
+        int ix0 = Math.max((int) Math.floor(x0), 0), ix1 = Math.min((int) Math.ceil(x1), width);
+        int iy0 = Math.max((int) Math.floor(y0), 0), iy1 = Math.min((int) Math.ceil(y1), height);
+        for (int j = iy0; j < iy1; j++) {
+            double cy = Math.min(y1, j + 1) - Math.max(y0, j);
+            int line = offset + j * scan;
+            for (int i = ix0; i < ix1; i++) {
+                double cx = Math.min(x1, i + 1) - Math.max(x0, i);
+                blend(line + i, (int) (cx * cy * alpha + 0.5));
+            }
+        }
+    }
+
+    void drawChar(int fontId, char c, float scale, float x, float y) {
+        double dx = x * (double) size, dy = y * (double) size;
+        int ix = (int) Math.floor(dx), iy = (int) Math.floor(dy);
+        int fx = (int) ((dx - ix) * SUBPIXELS), fy = (int) ((dy - iy) * SUBPIXELS);
+        Mask m = getMask(new GlyphKey(fontId, c, size * scale, fx, fy));
+        int x0 = ix + m.x, y0 = iy + m.y;
+        int i0 = Math.max(0, -x0), i1 = Math.min(m.w, width - x0);
+        int j0 = Math.max(0, -y0), j1 = Math.min(m.h, height - y0);
+        for (int j = j0; j < j1; j++) {
+            int line = offset + (y0 + j) * scan + x0;
+            int mline = j * m.w;
+            for (int i = i0; i < i1; i++) {
+                int a = m.alpha[mline + i] & 0xFF;
+                if (a != 0) {
+                    blend(line + i, alpha == 255 ? a : (a * alpha + 127) / 255);
+                }
+            }
+        }
+    }
+
+    /**
+     * Composite the current color with the coverage a over a pixel
+     */
+    private void blend(int index, int a) {
+        if (a <= 0) {
+            return;
+        }
+        int d = data[index];
+        int da = d >>> 24;
+        if (a >= 255 || da == 0) {
+            data[index] = (Math.min(a, 255) << 24) | rgb;
+            return;
+        }
+        int t = da * (255 - a) / 255;
+        int oa = a + t;
+        int r = (((rgb >> 16) & 0xFF) * a + ((d >> 16) & 0xFF) * t) / oa;
+        int g = (((rgb >> 8) & 0xFF) * a + ((d >> 8) & 0xFF) * t) / oa;
+        int b = ((rgb & 0xFF) * a + (d & 0xFF) * t) / oa;
+        data[index] = (oa << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static Mask getMask(GlyphKey key) {
+        Mask m;
+        synchronized (masks) {
+            m = masks.get(key);
+        }
+        if (m == null) {
+            m = new Mask(key);
+            synchronized (masks) {
+                masks.put(key, m);
+            }
+        }
+
+        return m;
+    }
+
+    private static final class GlyphKey {
+
+        final int fontId;
+        final char c;
+        final float scale;
+        final int fx;
+        final int fy;
+
+        GlyphKey(int fontId, char c, float scale, int fx, int fy) {
+            this.fontId = fontId;
+            this.c = c;
+            this.scale = scale;
+            this.fx = fx;
+            this.fy = fy;
+        }
+
+        public int hashCode() {
+            return ((fontId * 31 + c) * 31 + Float.floatToIntBits(scale)) * 31 + fx * SUBPIXELS + fy;
+        }
+
+        public boolean equals(Object o) {
+            if (o instanceof GlyphKey) {
+                GlyphKey k = (GlyphKey) o;
+                return c == k.c && fontId == k.fontId && scale == k.scale && fx == k.fx && fy == k.fy;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The antialiased coverage of a glyph, drawn as Java2D draws it.
+     */
+    private static final class Mask {
+
+        final int x;
+        final int y;
+        final int w;
+        final int h;
+        final byte[] alpha;
+
+        Mask(GlyphKey key) {
+            Font font = FontInfo.getFont(key.fontId);
+            char[] arr = new char[] {key.c};
+            AffineTransform at = AffineTransform.getScaleInstance(key.scale, key.scale);
+            Rectangle2D r = font.createGlyphVector(new FontRenderContext(at, true, false), arr).getVisualBounds();
+            x = (int) Math.floor(r.getMinX() * key.scale) - PAD;
+            y = (int) Math.floor(r.getMinY() * key.scale) - PAD;
+            w = Math.max((int) Math.ceil(r.getMaxX() * key.scale) + PAD - x, 1);
+            h = Math.max((int) Math.ceil(r.getMaxY() * key.scale) + PAD - y, 1);
+
+            BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = img.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.setColor(Color.BLACK);
+            g2.translate(-x + (double) key.fx / SUBPIXELS, -y + (double) key.fy / SUBPIXELS);
+            g2.scale(key.scale, key.scale);
+            g2.setFont(font);
+            g2.drawChars(arr, 0, 1, 0, 0);
+            g2.dispose();
+
+            int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+            alpha = new byte[w * h];
+            for (int i = 0; i < alpha.length; i++) {
+                alpha[i] = (byte) (pixels[i] >>> 24);
+            }
+        }
+    }
+}
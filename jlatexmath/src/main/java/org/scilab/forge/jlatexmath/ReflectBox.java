@@ -46,6 +46,7 @@
 package org.scilab.forge.jlatexmath;
 
 import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
 
 /**
  * A box representing a rotated box.
@@ -71,6 +72,18 @@ public class ReflectBox extends Box {
         g2.translate(-x, -y);
     }
 
+    void paint(BoxPainter p, float x, float y) {
+        if (p.canTransform()) {
+            AffineTransform at = AffineTransform.getTranslateInstance(x, y);
+            at.scale(-1, 1);
+            p.save(at);
+            box.paint(p, -width, 0);
+            p.restore();
+        } else {
+            p.fallback(this, x, y);
+        }
+    }
+
     public int getLastFontId() {
         return box.getLastFontId();
     }
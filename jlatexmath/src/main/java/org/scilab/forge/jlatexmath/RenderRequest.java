@@ -0,0 +1,142 @@
+/* RenderRequest.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.awt.Color;
+
+/**
+ * A formula to render with a {@link BatchRenderer}.
+ * Two requests are equal when they have the same source, context and rendering options:
+ * the batch renders them once.
+ */
+public final class RenderRequest {
+
+    private final String latex;
+    private final TeXContext context;
+    private final int style;
+    private final float size;
+    private final int inset;
+    private final Color fg;
+    private final Color bg;
+
+    /**
+     * @param latex the formula
+     * @param style a style like TeXConstants.STYLE_DISPLAY
+     * @param size the size of the font
+     */
+    public RenderRequest(String latex, int style, float size) {
+        this(latex, TeXContext.getDefault(), style, size, 0, null, null);
+    }
+
+    /**
+     * @param latex the formula
+     * @param context the context used to parse the formula
+     * @param style a style like TeXConstants.STYLE_DISPLAY
+     * @param size the size of the font
+     * @param inset the inset to add on the top, bottom, left and right
+     * @param fg the foreground color, black if null
+     * @param bg the background color, transparent if null
+     */
+    public RenderRequest(String latex, TeXContext context, int style, float size, int inset, Color fg, Color bg) {
+        if (latex == null || context == null) {
+            throw new NullPointerException();
+        }
+        this.latex = latex;
+        this.context = context;
+        this.style = style;
+        this.size = size;
+        this.inset = inset;
+        this.fg = fg;
+        this.bg = bg;
+    }
+
+    public String getLaTeX() {
+        return latex;
+    }
+
+    public TeXContext getContext() {
+        return context;
+    }
+
+    public int getStyle() {
+        return style;
+    }
+
+    public float getSize() {
+        return size;
+    }
+
+    public int getInset() {
+        return inset;
+    }
+
+    public Color getForeground() {
+        return fg;
+    }
+
+    public Color getBackground() {
+        return bg;
+    }
+
+    public int hashCode() {
+        int h = latex.hashCode();
+        h = 31 * h + System.identityHashCode(context);
+        h = 31 * h + style;
+        h = 31 * h + Float.floatToIntBits(size);
+        h = 31 * h + inset;
+        h = 31 * h + (fg == null ? 0 : fg.hashCode());
+        return 31 * h + (bg == null ? 0 : bg.hashCode());
+    }
+
+    public boolean equals(Object o) {
+        if (!(o instanceof RenderRequest)) {
+            return false;
+        }
+        RenderRequest r = (RenderRequest) o;
+        return latex.equals(r.latex) && context == r.context && style == r.style && size == r.size && inset == r.inset
+               && (fg == null ? r.fg == null : fg.equals(r.fg)) && (bg == null ? r.bg == null : bg.equals(r.bg));
+    }
+}
@@ -46,6 +46,7 @@
 package org.scilab.forge.jlatexmath;
 
 import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 
 /**
@@ -205,6 +206,18 @@ public class RotateBox extends Box {
         g2.rotate(angle, x, y);
     }
 
+    void paint(BoxPainter p, float x, float y) {
+        if (p.canTransform()) {
+            float rx = x + shiftX - xmin;
+            float ry = y - shiftY;
+            p.save(AffineTransform.getRotateInstance(-angle, rx, ry));
+            box.paint(p, rx, ry);
+            p.restore();
+        } else {
+            p.fallback(this, x, y);
+        }
+    }
+
     public int getLastFontId() {
         return box.getLastFontId();
     }
@@ -109,6 +109,48 @@ public class RowAtom extends Atom implements Row {
         }
     }
 
+    /**
+     * @return a copy of this row sharing its atoms, except the nested rows which are copied too
+     */
+    RowAtom copy() {
+        RowAtom row = new RowAtom();
+        row.type = type;
+        row.type_limits = type_limits;
+        row.alignment = alignment;
+        row.lookAtLastAtom = lookAtLastAtom;
+        for (Atom at : elements) {
+            row.elements.add(at.getClass() == RowAtom.class ? ((RowAtom) at).copy() : at);
+        }
+        return row;
+    }
+
+    /**
+     * @return true if the atoms which are shared by the copies of this row are never modified:
+     * apart from the nested rows, which are copied, the row only contains symbols, characters,
+     * spaces and rules, possibly typed or smashed. A row wrapped in another atom (e.g. the
+     * one of <code>\mathbin{\mathrm{mod}}</code>) would be shared and it keeps a state during
+     * the layout, so such a row can't be used as a template.
+     */
+    boolean canBeTemplate() {
+        for (Atom at : elements) {
+            if (at.getClass() == RowAtom.class ? !((RowAtom) at).canBeTemplate() : !isStateless(at)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isStateless(Atom at) {
+        if (at instanceof TypedAtom) {
+            return isStateless(((TypedAtom) at).getBase());
+        }
+        if (at instanceof SmashedAtom) {
+            return isStateless(((SmashedAtom) at).getAtom());
+        }
+        final Class<?> c = at.getClass();
+        return c == SymbolAtom.class || c == CharAtom.class || c == SpaceAtom.class || c == BreakMarkAtom.class || c == RuleAtom.class;
+    }
+
     public Atom getLastAtom() {
         if (elements.size() != 0) {
             return elements.removeLast();
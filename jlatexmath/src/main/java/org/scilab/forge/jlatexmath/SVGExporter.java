@@ -0,0 +1,346 @@
+/* SVGExporter.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Export a TeXIcon as SVG without Java2D.
+ * The characters are drawn with their outlines: each outline is written once in the
+ * <code>defs</code> and each occurrence is a <code>use</code>. The outlines are cached
+ * per font and character. The boxes which are only drawn with Java2D (images, frames,
+ * text in a system font, ...) are embedded as PNG images.
+ */
+public final class SVGExporter extends BoxPainter {
+
+    private static final String SVG_NS = "http://www.w3.org/2000/svg";
+    private static final String XLINK_NS = "http://www.w3.org/1999/xlink";
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    // the resolution of the embedded images relatively to the icon
+    private static final int IMAGE_SCALE = 2;
+
+    // key is (fontId << 16) | char, value is the path data in font units
+    private static final Map<Integer, String> outlines = new ConcurrentHashMap<Integer, String>();
+
+    private final StringBuilder body = new StringBuilder();
+    private final Map<Integer, String> glyphs = new LinkedHashMap<Integer, String>();
+    private final float size;
+    private final Color defaultColor;
+
+    private SVGExporter(float size, Color defaultColor) {
+        this.size = size;
+        this.defaultColor = defaultColor;
+        this.color = defaultColor;
+    }
+
+    /**
+     * @param icon the icon to export
+     * @return the SVG document
+     */
+    public static String toSVG(TeXIcon icon) {
+        StringWriter out = new StringWriter();
+        try {
+            write(icon, out);
+        } catch (IOException e) {
+            // a StringWriter doesn't throw
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * Write the SVG document of an icon
+     * @param icon the icon to export
+     * @param out the writer
+     * @throws IOException if an error occurs when writing
+     */
+    public static void write(TeXIcon icon, Writer out) throws IOException {
+        float size = icon.getSize();
+        Color fg = icon.getForeground();
+        SVGExporter svg = new SVGExporter(size, fg == null ? Color.BLACK : fg);
+        Insets insets = icon.getInsets();
+        Box box = icon.getBox();
+        box.paint(svg, insets.left / size, insets.top / size + box.getHeight());
+
+        int w = icon.getIconWidth(), h = icon.getIconHeight();
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<svg xmlns=\"" + SVG_NS + "\" xmlns:xlink=\"" + XLINK_NS + "\" width=\"" + w + "\" height=\"" + h + "\" viewBox=\"0 0 " + w + " " + h + "\">\n");
+        if (!svg.glyphs.isEmpty()) {
+            out.write("<defs>\n");
+            for (Map.Entry<Integer, String> e : svg.glyphs.entrySet()) {
+                out.write("<path id=\"" + e.getValue() + "\" d=\"" + getOutline(e.getKey()) + "\"/>\n");
+            }
+            out.write("</defs>\n");
+        }
+        out.write("<g transform=\"scale(" + format(size) + ")\" fill=\"" + toHex(svg.defaultColor) + "\"" + opacity(svg.defaultColor, "fill-opacity") + ">\n");
+        out.write(svg.body.toString());
+        out.write("</g>\n</svg>\n");
+    }
+
+    /**
+     * @return the number of cached glyph outlines
+     */
+    public static int getCachedOutlines() {
+        return outlines.size();
+    }
+
+    /**
+     * Clear the cache of glyph outlines
+     */
+    public static void clearCache() {
+        outlines.clear();
+    }
+
+    void fillRect(float x, float y, float w, float h) {
+        if (w < 0) {
+            x += w;
+            w = -w;
+        }
+        if (h < 0) {
+            y += h;
+            h = -h;
+        }
+        body.append("<rect x=\"").append(format(x)).append("\" y=\"").append(format(y))
+        .append("\" width=\"").append(format(w)).append("\" height=\"").append(format(h)).append('"');
+        appendFill();
+        body.append("/>\n");
+    }
+
+    void drawChar(int fontId, char c, float scale, float x, float y) {
+        Integer key = Integer.valueOf((fontId << 16) | c);
+        String id = glyphs.get(key);
+        if (id == null) {
+            id = "g" + glyphs.size();
+            glyphs.put(key, id);
+        }
+        body.append("<use xlink:href=\"#").append(id).append('"');
+        if (scale == 1) {
+            body.append(" x=\"").append(format(x)).append("\" y=\"").append(format(y)).append('"');
+        } else {
+            body.append(" transform=\"matrix(").append(format(scale)).append(" 0 0 ").append(format(scale))
+            .append(' ').append(format(x)).append(' ').append(format(y)).append(")\"");
+        }
+        appendFill();
+        body.append("/>\n");
+    }
+
+    void fallback(Box box, float x, float y) {
+        // the box is drawn with Java2D in an image which covers its bounds with a margin
+        // for the parts drawn outside (e.g. a slanted character)
+        float margin = 0.2f;
+        float bx = x - margin, by = y - box.height - margin;
+        float bw = Math.abs(box.width) + 2 * margin, bh = box.height + box.depth + 2 * margin;
+        float scale = size * IMAGE_SCALE;
+        int w = (int) Math.ceil(bw * scale), h = (int) Math.ceil(bh * scale);
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        if (box.width < 0) {
+            bx += box.width;
+        }
+
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2.scale(scale, scale);
+        g2.setColor(color);
+        box.draw(g2, x - bx, y - by);
+        g2.dispose();
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", png);
+        } catch (IOException e) {
+            return;
+        }
+        body.append("<image x=\"").append(format(bx)).append("\" y=\"").append(format(by))
+        .append("\" width=\"").append(format(bw)).append("\" height=\"").append(format(bh))
+        .append("\" preserveAspectRatio=\"none\" xlink:href=\"data:image/png;base64,");
+        base64(png.toByteArray(), body);
+        body.append("\"/>\n");
+    }
+
+    boolean canTransform() {
+        return true;
+    }
+
+    void save(AffineTransform at) {
+        body.append("<g transform=\"matrix(").append(format(at.getScaleX())).append(' ').append(format(at.getShearY()))
+        .append(' ').append(format(at.getShearX())).append(' ').append(format(at.getScaleY()))
+        .append(' ').append(format(at.getTranslateX())).append(' ').append(format(at.getTranslateY())).append(")\">\n");
+    }
+
+    void restore() {
+        body.append("</g>\n");
+    }
+
+    private void appendFill() {
+        if (color != null && !color.equals(defaultColor)) {
+            body.append(" fill=\"").append(toHex(color)).append('"').append(opacity(color, "fill-opacity"));
+        }
+    }
+
+    private static String getOutline(Integer key) {
+        String d = outlines.get(key);
+        if (d == null) {
+            int k = key.intValue();
+            Font font = FontInfo.getFont(k >>> 16);
+            char[] arr = new char[] {(char) (k & 0xFFFF)};
+            FontRenderContext frc = new FontRenderContext(null, true, false);
+            PathIterator it = font.createGlyphVector(frc, arr).getGlyphOutline(0).getPathIterator(null);
+            StringBuilder buf = new StringBuilder();
+            float[] c = new float[6];
+            while (!it.isDone()) {
+                switch (it.currentSegment(c)) {
+                case PathIterator.SEG_MOVETO :
+                    appendPoints(buf.append('M'), c, 2);
+                    break;
+                case PathIterator.SEG_LINETO :
+                    appendPoints(buf.append('L'), c, 2);
+                    break;
+                case PathIterator.SEG_QUADTO :
+                    appendPoints(buf.append('Q'), c, 4);
+                    break;
+                case PathIterator.SEG_CUBICTO :
+                    appendPoints(buf.append('C'), c, 6);
+                    break;
+                default :
+                    buf.append('Z');
+                }
+                it.next();
+            }
+            d = buf.toString();
+            outlines.put(key, d);
+        }
+
+        return d;
+    }
+
+    private static void appendPoints(StringBuilder buf, float[] c, int n) {
+        for (int i = 0; i < n; i++) {
+            if (i != 0) {
+                buf.append(' ');
+            }
+            buf.append(format(c[i]));
+        }
+    }
+
+    /**
+     * Format a number with at most 3 decimals and without exponent
+     */
+    static String format(double v) {
+        long r = Math.round(v * 1000);
+        StringBuilder buf = new StringBuilder();
+        if (r < 0) {
+            buf.append('-');
+            r = -r;
+        }
+        buf.append(r / 1000);
+        int dec = (int) (r % 1000);
+        if (dec != 0) {
+            buf.append('.');
+            if (dec < 100) {
+                buf.append('0');
+            }
+            if (dec < 10) {
+                buf.append('0');
+            }
+            while (dec % 10 == 0) {
+                dec /= 10;
+            }
+            buf.append(dec);
+        }
+
+        return buf.toString();
+    }
+
+    private static String toHex(Color c) {
+        String s = Integer.toHexString(c.getRGB() & 0xFFFFFF);
+        return "#000000".substring(0, 7 - s.length()) + s;
+    }
+
+    private static String opacity(Color c, String attribute) {
+        if (c.getAlpha() == 255) {
+            return "";
+        }
+        return " " + attribute + "=\"" + format(c.getAlpha() / 255.0) + "\"";
+    }
+
+    private static void base64(byte[] data, StringBuilder buf) {
+        int i = 0;
+        for (; i + 2 < data.length; i += 3) {
+            int n = ((data[i] & 0xFF) << 16) | ((data[i + 1] & 0xFF) << 8) | (data[i + 2] & 0xFF);
+            buf.append(BASE64[n >>> 18]).append(BASE64[(n >>> 12) & 63]).append(BASE64[(n >>> 6) & 63]).append(BASE64[n & 63]);
+        }
+        if (i < data.length) {
+            int n = (data[i] & 0xFF) << 16;
+            if (i + 1 < data.length) {
+                n |= (data[i + 1] & 0xFF) << 8;
+            }
+            buf.append(BASE64[n >>> 18]).append(BASE64[(n >>> 12) & 63]);
+            buf.append(i + 1 < data.length ? BASE64[(n >>> 6) & 63] : '=').append('=');
+        }
+    }
+}
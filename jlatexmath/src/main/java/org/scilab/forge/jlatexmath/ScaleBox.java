@@ -46,6 +46,7 @@
 package org.scilab.forge.jlatexmath;
 
 import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
 
 /**
  * A box representing a scaled box.
@@ -81,6 +82,21 @@ public class ScaleBox extends Box {
         }
     }
 
+    void paint(BoxPainter p, float x, float y) {
+        if (xscl != 0 && yscl != 0) {
+            float dec = xscl < 0 ? width : 0;
+            AffineTransform at = AffineTransform.getTranslateInstance(x + dec, y);
+            at.scale(xscl, yscl);
+            if (p.canTransform()) {
+                p.save(at);
+                box.paint(p, 0, 0);
+                p.restore();
+            } else {
+                p.fallback(this, x, y);
+            }
+        }
+    }
+
     public int getLastFontId() {
         return box.getLastFontId();
     }
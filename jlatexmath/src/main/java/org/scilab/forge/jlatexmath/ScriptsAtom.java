@@ -48,6 +48,8 @@
 
 package org.scilab.forge.jlatexmath;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * An atom representing scripts to be attached to another atom.
  */
@@ -56,6 +58,9 @@ public class ScriptsAtom extends Atom {
     // TeX constant: what's the use???
     private final static SpaceAtom SCRIPT_SPACE = new SpaceAtom(TeXConstants.UNIT_POINT, 0.5f, 0, 0);
 
+    // number of boxes built with scripts, to check that a base is not laid out twice
+    private static final AtomicLong boxes = new AtomicLong();
+
     // base atom
     private final Atom base;
 
@@ -76,12 +81,19 @@ public class ScriptsAtom extends Atom {
             align = TeXConstants.ALIGN_RIGHT;
     }
 
+    /**
+     * @return the number of boxes with scripts built since the library was loaded
+     */
+    static long getBoxCount() {
+        return boxes.get();
+    }
+
     public Box createBox(TeXEnvironment env) {
-        Box b = (base == null ? new StrutBox(0, 0, 0, 0) : base.createBox(env));
         Box deltaSymbol = new StrutBox(0, 0, 0, 0);
         if (subscript == null && superscript == null)
-            return b;
+            return (base == null ? new StrutBox(0, 0, 0, 0) : base.createBox(env));
         else {
+            boxes.incrementAndGet();
             TeXFont tf = env.getTeXFont();
             int style = env.getStyle();
 
@@ -89,6 +101,16 @@ public class ScriptsAtom extends Atom {
                 return new UnderOverAtom(new UnderOverAtom(base, subscript, TeXConstants.UNIT_POINT, 0.3f, true, false),
                                          superscript, TeXConstants.UNIT_POINT, 3.0f, true, true).createBox(env);
 
+            // the base of an accent is laid out once for the accent and for the scripts
+            Box accentBase = null;
+            Box b;
+            if (base instanceof AccentedAtom) {
+                accentBase = ((AccentedAtom) base).createBaseBox(env);
+                b = ((AccentedAtom) base).createBox(env, accentBase);
+            } else {
+                b = base.createBox(env);
+            }
+
             HorizontalBox hor = new HorizontalBox(b);
 
             int lastFontId = b.getLastFontId();
@@ -104,9 +126,8 @@ public class ScriptsAtom extends Atom {
             // TODO: use polymorphism?
             if (base instanceof AccentedAtom) { // special case :
                 // accent. This positions superscripts better next to the accent!
-                Box box = ((AccentedAtom) base).base.createBox(env.crampStyle());
-                shiftUp = box.getHeight() - tf.getSupDrop(supStyle.getStyle());
-                shiftDown = box.getDepth() + tf.getSubDrop(subStyle.getStyle());
+                shiftUp = accentBase.getHeight() - tf.getSupDrop(supStyle.getStyle());
+                shiftDown = accentBase.getDepth() + tf.getSubDrop(subStyle.getStyle());
             } else if (base instanceof SymbolAtom
                        && base.type == TeXConstants.TYPE_BIG_OPERATOR) { // single big operator symbol
                 Char c = tf.getChar(((SymbolAtom) base).getName(), style);
@@ -152,9 +173,10 @@ public class ScriptsAtom extends Atom {
                 return hor;
             } else {
                 Box x = superscript.createBox(supStyle);
+                Box y = subscript == null ? null : subscript.createBox(subStyle);
                 float msiz = x.getWidth();
-                if (subscript != null && align == TeXConstants.ALIGN_RIGHT) {
-                    msiz = Math.max(msiz, subscript.createBox(subStyle).getWidth());
+                if (y != null && align == TeXConstants.ALIGN_RIGHT) {
+                    msiz = Math.max(msiz, y.getWidth());
                 }
 
                 HorizontalBox sup = new HorizontalBox(x, msiz, align);
@@ -175,7 +197,6 @@ public class ScriptsAtom extends Atom {
                     sup.setShift(-shiftUp);
                     hor.add(sup);
                 } else { // both superscript and subscript
-                    Box y = subscript.createBox(subStyle);
                     HorizontalBox sub = new HorizontalBox(y, msiz, align);
                     // add scriptspace (constant value!)
                     sub.add(SCRIPT_SPACE.createBox(env));
@@ -65,6 +65,10 @@ public class SmashedAtom extends Atom {
         this.at = at;
     }
 
+    Atom getAtom() {
+        return at;
+    }
+
     public Box createBox(TeXEnvironment env) {
         Box b = at.createBox(env);
         if (h)
@@ -0,0 +1,671 @@
+/* Snapshot.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A snapshot of the tables built from the resources of the library when it is initialized:
+ * the symbol mappings of TeXFormula, the symbols, the glue types and rules, the parameters,
+ * the text styles and the symbol mappings of DefaultTeXFont and the font metrics.
+ * When the system property {@link #PROPERTY} names a valid snapshot, the file is mapped in
+ * memory and the class initializers read their tables from it instead of parsing the XML
+ * resources. A snapshot is valid when it has been written from the same resources and by the
+ * same version of the classes reading them, which are checked with a checksum: after an
+ * upgrade of the library the snapshot is ignored (and should be written again). The content of
+ * the tables is checked with an other checksum, so a truncated or damaged file is ignored too.
+ * The commands, the macros and the predefined formulas are defined in the code, so they are
+ * not in the snapshot.
+ */
+public final class Snapshot {
+
+    /**
+     * The system property containing the path of the snapshot to use
+     */
+    public static final String PROPERTY = "org.scilab.forge.jlatexmath.snapshot";
+
+    private static final int MAGIC = 0x4A4C4D53; // JLMS
+    private static final int VERSION = 3;
+
+    // the classes reading or writing the tables, they are part of the checksum
+    private static final String[] CLASSES = {"Snapshot.class",
+                                             "FontMetricsBundle.class",
+                                             "DefaultTeXFontParser.class",
+                                             "TeXFormulaSettingsParser.class",
+                                             "TeXSymbolParser.class",
+                                             "GlueSettingsParser.class"};
+
+    // the sections of the file, in this order
+    private static final int SYMBOL_MAPPINGS = 0;
+    private static final int FORMULA_MAPPINGS = 1;
+    private static final int SYMBOLS = 2;
+    private static final int GLUE_TYPES = 3;
+    private static final int GLUE_TABLE = 4;
+    private static final int METRICS_INCLUDES = 5;
+    private static final int PARAMETERS = 6;
+    private static final int GENERAL_SETTINGS = 7;
+    private static final int TEXT_STYLES = 8;
+    private static final int DEFAULT_TEXT_STYLES = 9;
+    private static final int FONT_SYMBOL_MAPPINGS = 10;
+    private static final int METRICS = 11;
+    private static final int SECTIONS = 12;
+
+    private static Snapshot current;
+    private static boolean opened;
+
+    private final ByteBuffer data;
+    private final int[] offsets;
+
+    private Snapshot(ByteBuffer data, int[] offsets) {
+        this.data = data;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @return the snapshot named by the system property or null if there is no valid one
+     */
+    static synchronized Snapshot get() {
+        if (!opened) {
+            opened = true;
+            final String path = System.getProperty(PROPERTY);
+            if (path != null) {
+                final long start = System.nanoTime();
+                current = open(new File(path));
+                Startup.record(current == null ? "snapshot (not valid)" : "snapshot", start);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @param file a snapshot
+     * @return true if the file is a snapshot of the resources of this version of the library
+     */
+    public static boolean isValid(File file) {
+        return open(file) != null;
+    }
+
+    /**
+     * Write a snapshot of the tables built from the resources of the library. The tables are
+     * built again from the XML files, so the alphabets or the symbols added since the library
+     * has been initialized are not in the snapshot. The file is replaced atomically.
+     * @param file the snapshot to create
+     */
+    public static void write(File file) throws IOException, ResourceParseException {
+        // the font ids of the characters are the ones of the loaded fonts
+        DefaultTeXFont.ensureLoaded();
+
+        final ByteArrayOutputStream[] sections = new ByteArrayOutputStream[SECTIONS];
+        final DataOutputStream[] outs = new DataOutputStream[SECTIONS];
+        for (int i = 0; i < SECTIONS; i++) {
+            sections[i] = new ByteArrayOutputStream();
+            outs[i] = new DataOutputStream(sections[i]);
+        }
+
+        final TeXFormulaSettingsParser settings = new TeXFormulaSettingsParser(resource(TeXFormulaSettingsParser.RESOURCE_NAME), TeXFormulaSettingsParser.RESOURCE_NAME);
+        Map<Integer, String> mappings = new HashMap<Integer, String>();
+        Map<Integer, String> textMappings = new HashMap<Integer, String>();
+        settings.parseSymbolMappings(mappings, textMappings);
+        writeMappings(outs[SYMBOL_MAPPINGS], mappings);
+        writeMappings(outs[SYMBOL_MAPPINGS], textMappings);
+        mappings = new HashMap<Integer, String>();
+        textMappings = new HashMap<Integer, String>();
+        settings.parseSymbolToFormulaMappings(mappings, textMappings);
+        writeMappings(outs[FORMULA_MAPPINGS], mappings);
+        writeMappings(outs[FORMULA_MAPPINGS], textMappings);
+
+        final Map<String, SymbolAtom> symbols = new TeXSymbolParser(resource(TeXSymbolParser.RESOURCE_NAME), TeXSymbolParser.RESOURCE_NAME).readSymbols();
+        outs[SYMBOLS].writeInt(symbols.size());
+        for (SymbolAtom sym : symbols.values()) {
+            FontMetricsBundle.writeString(outs[SYMBOLS], sym.getName());
+            outs[SYMBOLS].writeByte(sym.type);
+            outs[SYMBOLS].writeBoolean(sym.isDelimiter());
+        }
+
+        final GlueSettingsParser glue = new GlueSettingsParser(resource(GlueSettingsParser.RESOURCE_NAME));
+        final Glue[] glueTypes = glue.getGlueTypes();
+        outs[GLUE_TYPES].writeInt(glueTypes.length);
+        for (Glue g : glueTypes) {
+            FontMetricsBundle.writeString(outs[GLUE_TYPES], g.getName());
+            outs[GLUE_TYPES].writeFloat(g.getSpace());
+            outs[GLUE_TYPES].writeFloat(g.getStretch());
+            outs[GLUE_TYPES].writeFloat(g.getShrink());
+        }
+        final int[][][] glueTable = glue.createGlueTable();
+        outs[GLUE_TABLE].writeInt(glueTable.length);
+        outs[GLUE_TABLE].writeInt(glueTable[0].length);
+        outs[GLUE_TABLE].writeInt(glueTable[0][0].length);
+        for (int[][] t : glueTable) {
+            for (int[] u : t) {
+                for (int v : u) {
+                    outs[GLUE_TABLE].writeInt(v);
+                }
+            }
+        }
+
+        final DefaultTeXFontParser font = new DefaultTeXFontParser(resource(DefaultTeXFontParser.RESOURCE_NAME), DefaultTeXFontParser.RESOURCE_NAME);
+        final List<String> includes = font.getMetricsIncludes();
+        outs[METRICS_INCLUDES].writeInt(includes.size());
+        for (String include : includes) {
+            FontMetricsBundle.writeString(outs[METRICS_INCLUDES], include);
+        }
+        final Map<String, Float> parameters = font.parseParameters();
+        outs[PARAMETERS].writeInt(parameters.size());
+        for (Map.Entry<String, Float> e : parameters.entrySet()) {
+            FontMetricsBundle.writeString(outs[PARAMETERS], e.getKey());
+            outs[PARAMETERS].writeFloat(e.getValue().floatValue());
+        }
+        final Map<String, Number> general = font.parseGeneralSettings();
+        outs[GENERAL_SETTINGS].writeInt(general.size());
+        for (Map.Entry<String, Number> e : general.entrySet()) {
+            FontMetricsBundle.writeString(outs[GENERAL_SETTINGS], e.getKey());
+            if (e.getValue() instanceof Integer) {
+                outs[GENERAL_SETTINGS].writeByte('I');
+                outs[GENERAL_SETTINGS].writeInt(e.getValue().intValue());
+            } else {
+                outs[GENERAL_SETTINGS].writeByte('F');
+                outs[GENERAL_SETTINGS].writeFloat(e.getValue().floatValue());
+            }
+        }
+        final Map<String, CharFont[]> styles = font.parseTextStyleMappings();
+        outs[TEXT_STYLES].writeInt(styles.size());
+        for (Map.Entry<String, CharFont[]> e : styles.entrySet()) {
+            FontMetricsBundle.writeString(outs[TEXT_STYLES], e.getKey());
+            outs[TEXT_STYLES].writeByte(e.getValue().length);
+            for (CharFont cf : e.getValue()) {
+                writeCharFont(outs[TEXT_STYLES], cf);
+            }
+        }
+        final String[] defaultStyles = font.parseDefaultTextStyleMappings();
+        outs[DEFAULT_TEXT_STYLES].writeByte(defaultStyles.length);
+        for (String style : defaultStyles) {
+            FontMetricsBundle.writeString(outs[DEFAULT_TEXT_STYLES], style);
+        }
+        final Map<String, CharFont> fontSymbols = font.parseSymbolMappings();
+        outs[FONT_SYMBOL_MAPPINGS].writeInt(fontSymbols.size());
+        for (Map.Entry<String, CharFont> e : fontSymbols.entrySet()) {
+            FontMetricsBundle.writeString(outs[FONT_SYMBOL_MAPPINGS], e.getKey());
+            writeCharFont(outs[FONT_SYMBOL_MAPPINGS], e.getValue());
+        }
+
+        final List<String> resources = new ArrayList<String>();
+        resources.add(TeXFormulaSettingsParser.RESOURCE_NAME);
+        resources.add(TeXSymbolParser.RESOURCE_NAME);
+        resources.add(GlueSettingsParser.RESOURCE_NAME);
+        resources.add(DefaultTeXFontParser.RESOURCE_NAME);
+        resources.addAll(font.getSymbolMappingIncludes());
+
+        // the bundle built with the library is copied, it is faster to check than the metrics
+        // files it comes from
+        final byte[] bundle = readBundle();
+        if (bundle != null) {
+            outs[METRICS].write(bundle);
+            resources.add(FontMetricsBundle.RESOURCE_NAME);
+        } else {
+            FontMetricsBundle.write(outs[METRICS]);
+            resources.addAll(includes);
+        }
+        resources.addAll(Arrays.asList(CLASSES));
+
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        final DataOutputStream head = new DataOutputStream(header);
+        head.writeInt(MAGIC);
+        head.writeInt(VERSION);
+        head.writeLong(checksum(resources));
+        head.writeInt(resources.size());
+        for (String name : resources) {
+            FontMetricsBundle.writeString(head, name);
+        }
+        final CRC32 crc = new CRC32();
+        int length = 0;
+        for (int i = 0; i < SECTIONS; i++) {
+            outs[i].flush();
+            crc.update(sections[i].toByteArray());
+            length += sections[i].size();
+        }
+        head.writeInt(length);
+        head.writeLong(crc.getValue());
+        int offset = head.size() + 4 * SECTIONS;
+        for (int i = 0; i < SECTIONS; i++) {
+            head.writeInt(offset);
+            offset += sections[i].size();
+        }
+
+        final File dir = file.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+        final File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            final FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                header.writeTo(out);
+                for (ByteArrayOutputStream section : sections) {
+                    section.writeTo(out);
+                }
+            } finally {
+                out.close();
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private static Snapshot open(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            final RandomAccessFile raf = new RandomAccessFile(file, "r");
+            final ByteBuffer data;
+            try {
+                final FileChannel channel = raf.getChannel();
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                raf.close();
+            }
+
+            if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+                return null;
+            }
+            final long checksum = data.getLong();
+            final List<String> resources = new ArrayList<String>();
+            for (int n = data.getInt(); n > 0; n--) {
+                resources.add(FontMetricsBundle.readString(data));
+            }
+            if (checksum != checksum(resources)) {
+                return null;
+            }
+            final int length = data.getInt();
+            final long crc = data.getLong();
+            // the sections follow the header in order up to the end of the file, the end of
+            // the last one is the end of the file
+            final int[] offsets = new int[SECTIONS + 1];
+            for (int i = 0; i < SECTIONS; i++) {
+                offsets[i] = data.getInt();
+            }
+            offsets[SECTIONS] = data.limit();
+            if (offsets[0] != data.position() || length != data.limit() - offsets[0]) {
+                return null;
+            }
+            for (int i = 0; i < SECTIONS; i++) {
+                if (offsets[i] > offsets[i + 1]) {
+                    return null;
+                }
+            }
+            if (crc != checksum(data, offsets[0])) {
+                return null;
+            }
+
+            return new Snapshot(data, offsets);
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) {
+            // truncated file
+            return null;
+        }
+    }
+
+    private static long checksum(List<String> resources) throws IOException {
+        final CRC32 crc = new CRC32();
+        final byte[] chunk = new byte[8192];
+        for (String name : resources) {
+            final InputStream in = Snapshot.class.getResourceAsStream(name);
+            if (in == null) {
+                throw new FileNotFoundException(name);
+            }
+            try {
+                crc.update(name.getBytes("UTF-8"));
+                int n;
+                while ((n = in.read(chunk)) != -1) {
+                    crc.update(chunk, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static long checksum(ByteBuffer data, int start) {
+        final ByteBuffer buf = data.duplicate();
+        buf.position(start);
+        final CRC32 crc = new CRC32();
+        final byte[] chunk = new byte[8192];
+        while (buf.hasRemaining()) {
+            final int n = Math.min(chunk.length, buf.remaining());
+            buf.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        return crc.getValue();
+    }
+
+    private static byte[] readBundle() throws IOException {
+        final InputStream in = Snapshot.class.getResourceAsStream(FontMetricsBundle.RESOURCE_NAME);
+        if (in == null) {
+            return null;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 18);
+        try {
+            final byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                bytes.write(chunk, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return FontMetricsBundle.read(ByteBuffer.wrap(bytes.toByteArray())) == null ? null : bytes.toByteArray();
+    }
+
+    private static InputStream resource(String name) throws FileNotFoundException {
+        final InputStream in = Snapshot.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new FileNotFoundException(name);
+        }
+        return in;
+    }
+
+    private ByteBuffer section(int section) {
+        final ByteBuffer buf = data.duplicate();
+        buf.limit(offsets[section + 1]);
+        buf.position(offsets[section]);
+        return buf;
+    }
+
+    /*
+     * The checksums make a damaged section very unlikely, but the tables are read in class
+     * initializers where an exception would make the library unusable: the readers return
+     * null instead and the tables are read from the XML resources. The snapshot is not used
+     * by the parsers created after that.
+     */
+    private <T> T damaged() {
+        synchronized (Snapshot.class) {
+            if (current == this) {
+                current = null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return false if the mappings cannot be read, then the maps are not modified
+     */
+    boolean readSymbolMappings(Map<Integer, String> mappings, Map<Integer, String> textMappings) {
+        return readMappings(SYMBOL_MAPPINGS, mappings, textMappings);
+    }
+
+    /**
+     * @return false if the mappings cannot be read, then the maps are not modified
+     */
+    boolean readSymbolToFormulaMappings(Map<Integer, String> mappings, Map<Integer, String> textMappings) {
+        return readMappings(FORMULA_MAPPINGS, mappings, textMappings);
+    }
+
+    private boolean readMappings(int section, Map<Integer, String> mappings, Map<Integer, String> textMappings) {
+        final Map<Integer, String> math = new HashMap<Integer, String>();
+        final Map<Integer, String> text = new HashMap<Integer, String>();
+        try {
+            final ByteBuffer buf = section(section);
+            readMappings(buf, math);
+            readMappings(buf, text);
+        } catch (RuntimeException e) {
+            damaged();
+            return false;
+        }
+        mappings.putAll(math);
+        if (textMappings != null) {
+            textMappings.putAll(text);
+        }
+        return true;
+    }
+
+    Map<String, SymbolAtom> readSymbols() {
+        try {
+            final ByteBuffer buf = section(SYMBOLS);
+            final int n = FontMetricsBundle.readCount(buf, 4);
+            final Map<String, SymbolAtom> symbols = new HashMap<String, SymbolAtom>(2 * n);
+            for (int i = 0; i < n; i++) {
+                final String name = FontMetricsBundle.readString(buf);
+                final int type = buf.get();
+                symbols.put(name, new SymbolAtom(name, type, buf.get() != 0));
+            }
+            return symbols;
+        } catch (RuntimeException e) {
+            return damaged();
+        }
+    }
+
+    Glue[] readGlueTypes() {
+        try {
+            final ByteBuffer buf = section(GLUE_TYPES);
+            final Glue[] types = new Glue[FontMetricsBundle.readCount(buf, 14)];
+            for (int i = 0; i < types.length; i++) {
+                final String name = FontMetricsBundle.readString(buf);
+                final float space = buf.getFloat();
+                final float stretch = buf.getFloat();
+                types[i] = new Glue(space, stretch, buf.getFloat(), name);
+            }
+            return types;
+        } catch (RuntimeException e) {
+            return damaged();
+        }
+    }
+
+    int[][][] readGlueTable() {
+        try {
+            final ByteBuffer buf = section(GLUE_TABLE);
+            final int n = buf.getInt();
+            final int m = buf.getInt();
+            final int k = buf.getInt();
+            if (n < 0 || m < 0 || k < 0 || 4L * n * m * k > buf.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            final int[][][] table = new int[n][m][k];
+            for (int[][] t : table) {
+                for (int[] u : t) {
+                    for (int i = 0; i < u.length; i++) {
+                        u[i] = buf.getInt();
+                    }
+                }
+            }
+            return table;
+        } catch (RuntimeException e) {
+            return damaged();
+        }
+    }
+
+    List<String> readMetricsIncludes() {
+        try {
+            final ByteBuffer buf = section(METRICS_INCLUDES);
+            final List<String> includes = new ArrayList<String>();
+            for (int n = buf.getInt(); n > 0; n--) {
+                includes.add(FontMetricsBundle.readString(buf));
+            }
+            return includes;
+        } catch (RuntimeException e) {
+            return damaged();
+        }
+    }
+
+    Map<String, Float> readParameters() {
+        try {
+            final ByteBuffer buf = section(PARAMETERS);
+            final Map<String, Float> parameters = new HashMap<String, Float>();
+            for (int n = buf.getInt(); n > 0; n--) {
+                final String name = FontMetricsBundle.readString(buf);
+                parameters.put(name, buf.getFloat());
+            }
+            return parameters;
+        } catch (RuntimeException e) {
+            return damaged();
+        }
+    }
+
+    Map<String, Number> readGeneralSettings() {
+        try {
+            final ByteBuffer buf = section(GENERAL_SETTINGS);
+            final Map<String, Number> settings = new HashMap<String, Number>();
+            for (int n = buf.getInt(); n > 0; n--) {
+                final String name = FontMetricsBundle.readString(buf);
+                if (buf.get() == 'I') {
+                    settings.put(name, buf.getInt());
+                } else {
+                    settings.put(name, buf.getFloat());
+                }
+            }
+            return settings;
+        } catch (RuntimeException e) {
+            return damaged();
+        }
+    }
+
+    Map<String, CharFont[]> readTextStyleMappings() {
+        try {
+            final ByteBuffer buf = section(TEXT_STYLES);
+            final Map<String, CharFont[]> styles = new HashMap<String, CharFont[]>();
+            for (int n = buf.getInt(); n > 0; n--) {
+                final String name = FontMetricsBundle.readString(buf);
+                final CharFont[] fonts = new CharFont[buf.get()];
+                for (int i = 0; i < fonts.length; i++) {
+                    fonts[i] = readCharFont(buf);
+                }
+                styles.put(name, fonts);
+            }
+            return styles;
+        } catch (RuntimeException e) {
+            return damaged();
+        }
+    }
+
+    String[] readDefaultTextStyleMappings() {
+        try {
+            final ByteBuffer buf = section(DEFAULT_TEXT_STYLES);
+            final String[] styles = new String[buf.get()];
+            for (int i = 0; i < styles.length; i++) {
+                styles[i] = FontMetricsBundle.readString(buf);
+            }
+            return styles;
+        } catch (RuntimeException e) {
+            return damaged();
+        }
+    }
+
+    Map<String, CharFont> readFontSymbolMappings() {
+        try {
+            final ByteBuffer buf = section(FONT_SYMBOL_MAPPINGS);
+            final int n = FontMetricsBundle.readCount(buf, 3);
+            final Map<String, CharFont> mappings = new HashMap<String, CharFont>(2 * n);
+            for (int i = 0; i < n; i++) {
+                final String name = FontMetricsBundle.readString(buf);
+                mappings.put(name, readCharFont(buf));
+            }
+            return mappings;
+        } catch (RuntimeException e) {
+            return damaged();
+        }
+    }
+
+    FontMetricsBundle readMetrics() {
+        try {
+            return FontMetricsBundle.read(section(METRICS).slice());
+        } catch (RuntimeException e) {
+            return damaged();
+        }
+    }
+
+    private static void writeMappings(DataOutputStream out, Map<Integer, String> mappings) throws IOException {
+        out.writeInt(mappings.size());
+        for (Map.Entry<Integer, String> e : mappings.entrySet()) {
+            out.writeInt(e.getKey().intValue());
+            FontMetricsBundle.writeString(out, e.getValue());
+        }
+    }
+
+    private static void readMappings(ByteBuffer buf, Map<Integer, String> mappings) {
+        for (int n = buf.getInt(); n > 0; n--) {
+            final int cp = buf.getInt();
+            mappings.put(cp, FontMetricsBundle.readString(buf));
+        }
+    }
+
+    private static void writeCharFont(DataOutputStream out, CharFont cf) throws IOException {
+        if (cf == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            out.writeChar(cf.c);
+            out.writeInt(cf.fontId);
+            out.writeInt(cf.boldFontId);
+        }
+    }
+
+    private static CharFont readCharFont(ByteBuffer buf) {
+        if (buf.get() == 0) {
+            return null;
+        }
+        final char c = buf.getChar();
+        final int fontId = buf.getInt();
+        return new CharFont(c, fontId, buf.getInt());
+    }
+}
@@ -0,0 +1,211 @@
+/* Startup.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Element;
+
+/**
+ * Load the resources read by the class initializers concurrently.
+ * When a valid {@link Snapshot} is used, only the font metrics are loaded.
+ * When the first one of them needs its XML document, all the documents and the font metrics
+ * bundle are parsed by a few daemon threads (one per spare processor). Each initializer then
+ * waits only for its own document, or parses it itself if no thread has started it yet, so
+ * that nothing is done twice. The documents are only parsed here: they are still interpreted
+ * by the class initializers, in the order the JVM initializes the classes, so the dependencies
+ * between them (the font descriptions before the symbol mappings, ...) are unchanged.
+ */
+public final class Startup {
+
+    // the biggest ones first
+    private static final String[] DOCUMENTS = {TeXFormulaSettingsParser.RESOURCE_NAME,
+                                               TeXSymbolParser.RESOURCE_NAME,
+                                               DefaultTeXFontParser.RESOURCE_NAME,
+                                               GlueSettingsParser.RESOURCE_NAME};
+
+    private static final Map<String, FutureTask<Element>> documents = new HashMap<String, FutureTask<Element>>();
+    private static final List<Timing> timings = new ArrayList<Timing>();
+    private static boolean started;
+
+    private Startup() { }
+
+    /**
+     * Start loading the resources in the background. This method returns immediately, it can
+     * be called from any thread and more than once. It is called by the library itself when
+     * the first formula is created, or it can be called earlier by the application.
+     */
+    public static void start() {
+        final List<FutureTask<?>> tasks = new ArrayList<FutureTask<?>>();
+        // nothing to parse when the tables are read from a snapshot
+        final String[] names = Snapshot.get() == null ? DOCUMENTS : new String[0];
+        synchronized (Startup.class) {
+            if (started) {
+                return;
+            }
+            started = true;
+            for (final String name : names) {
+                FutureTask<Element> task = new FutureTask<Element>(new Callable<Element>() {
+                    public Element call() throws Exception {
+                        final long start = System.nanoTime();
+                        Element root = parse(name);
+                        record(name, start);
+                        return root;
+                    }
+                });
+                documents.put(name, task);
+                tasks.add(task);
+            }
+            tasks.add(new FutureTask<Void>(new Callable<Void>() {
+                public Void call() {
+                    FontMetricsBundle.getDefault();
+                    return null;
+                }
+            }));
+        }
+
+        final int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors() - 1);
+        for (int i = 0; i < threads; i++) {
+            // a task already run by another thread is skipped
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    for (FutureTask<?> task : tasks) {
+                        task.run();
+                    }
+                }
+            }, "jlatexmath-startup-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * @return the time spent on each resource and class initializer, in the order they
+     * finished, with the thread which did the work
+     */
+    public static synchronized String getReport() {
+        long origin = Long.MAX_VALUE;
+        for (Timing t : timings) {
+            origin = Math.min(origin, t.start);
+        }
+        StringBuilder buf = new StringBuilder();
+        for (Timing t : timings) {
+            buf.append(String.format("%-24s %8.2f ms  (from %7.2f ms, %s)%n", t.name, (t.end - t.start) / 1e6, (t.start - origin) / 1e6, t.thread));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Get the root of a document of the library: the one parsed in the background when it is
+     * there, else the document is parsed in the current thread.
+     */
+    static Element getDocument(String name) throws ResourceParseException {
+        start();
+        FutureTask<Element> task;
+        synchronized (Startup.class) {
+            // the document is used once, then it can be collected
+            task = documents.remove(name);
+        }
+        if (task == null) {
+            // already used once: it is parsed again and reported as such
+            final long start = System.nanoTime();
+            try {
+                Element root = parse(name);
+                record(name, start);
+                return root;
+            } catch (Exception e) {
+                throw new XMLResourceParseException(name, e);
+            }
+        }
+
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XMLResourceParseException(name, e);
+        } catch (ExecutionException e) {
+            throw new XMLResourceParseException(name, e.getCause());
+        }
+    }
+
+    /**
+     * Record the time spent since start by the current thread
+     */
+    static synchronized void record(String name, long start) {
+        timings.add(new Timing(name, start, System.nanoTime(), Thread.currentThread().getName()));
+    }
+
+    private static Element parse(String name) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setIgnoringElementContentWhitespace(true);
+        factory.setIgnoringComments(true);
+        return factory.newDocumentBuilder().parse(Startup.class.getResourceAsStream(name)).getDocumentElement();
+    }
+
+    private static final class Timing {
+
+        final String name;
+        final long start;
+        final long end;
+        final String thread;
+
+        Timing(String name, long start, long end, String thread) {
+            this.name = name;
+            this.start = start;
+            this.end = end;
+            this.thread = thread;
+        }
+    }
+}
@@ -64,6 +64,10 @@ public class StrutBox extends Box {
         // no visual effect
     }
 
+    void paint(BoxPainter p, float x, float y) {
+        // no visual effect
+    }
+
     public int getLastFontId() {
         return TeXFont.NO_FONT;
     }
@@ -53,6 +53,7 @@ import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.util.BitSet;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A box representing a symbol (a non-alphanumeric character).
@@ -74,7 +75,8 @@ public class SymbolAtom extends CharSymbol {
     private char unicode;
 
     static {
-        symbols = new TeXSymbolParser().readSymbols();
+        final long start = System.nanoTime();
+        symbols = new ConcurrentHashMap<String, SymbolAtom>(new TeXSymbolParser().readSymbols());
 
         // set valid symbol types
         validSymbolTypes =  new BitSet(16);
@@ -86,6 +88,7 @@ public class SymbolAtom extends CharSymbol {
         validSymbolTypes.set(TeXConstants.TYPE_CLOSING);
         validSymbolTypes.set(TeXConstants.TYPE_PUNCTUATION);
         validSymbolTypes.set(TeXConstants.TYPE_ACCENT);
+        Startup.record("SymbolAtom", start);
     }
 
     public SymbolAtom(SymbolAtom s, int type) throws InvalidSymbolTypeException {
@@ -181,7 +184,7 @@ public class SymbolAtom extends CharSymbol {
         Box cb = new CharBox(c);
         if (env.getSmallCap() && unicode != 0 && Character.isLowerCase(unicode)) {
             try {
-                cb = new ScaleBox(new CharBox(tf.getChar(TeXFormula.symbolTextMappings[Character.toUpperCase(unicode)], style)), 0.8, 0.8);
+                cb = new ScaleBox(new CharBox(tf.getChar(TeXFormula.getSymbolTextMapping(Character.toUpperCase(unicode)), style)), 0.8, 0.8);
             } catch (SymbolMappingNotFoundException e) { }
         }
 
@@ -89,7 +89,7 @@ VerticalBox vb = new VerticalBox();
 vb.add(b);
 Char ch = env.getTeXFont().getChar("ogonek", env.getStyle());
 float italic = ch.getItalic();
-float x = new SpaceAtom(TeXConstants.UNIT_MU, 1f, 0, 0).createBox(env).getWidth();
+float x = SpaceAtom.getFactor(TeXConstants.UNIT_MU, env);
 Box ogonek = new CharBox(ch);
 Box y;
 if (Math.abs(italic) > TeXFormula.PREC) {
@@ -0,0 +1,243 @@
+/* TeXContext.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.awt.Color;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The definitions used to parse a formula: commands, user macros and named colors.
+ * The default context is backed by the global registries (<code>MacroInfo.Commands</code>,
+ * <code>NewCommandMacro</code> and <code>ColorAtom.Colors</code>) and is the one used
+ * when no context is given. A derived context is an overlay on its parent: lookups fall
+ * back to the parent and definitions (<code>\newcommand</code>, <code>\definecolor</code>, ...)
+ * only go in the overlay, so deriving is cheap and nothing leaks into the parent.
+ * Once frozen, a context cannot be modified anymore and it can be shared between threads,
+ * each one deriving its own context from it.
+ */
+public class TeXContext {
+
+    private static final TeXContext DEFAULT = new TeXContext(null);
+
+    // incremented each time something which can change the result of a parse in any context is defined
+    private static final AtomicLong generation = new AtomicLong();
+
+    private final TeXContext parent;
+    // incremented each time a definition is added in this context
+    private final AtomicLong localGeneration = new AtomicLong();
+    private volatile boolean frozen;
+    private volatile Map<String, MacroInfo> commands;
+    private volatile Map<String, String> macrocode;
+    private volatile Map<String, String> macroreplacement;
+    private volatile Map<String, Color> colors;
+
+    private TeXContext(TeXContext parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * @return the context backed by the global registries
+     */
+    public static TeXContext getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Create a new context whose definitions are added on top of this one.
+     * @return the derived context
+     */
+    public TeXContext derive() {
+        return new TeXContext(this);
+    }
+
+    /**
+     * Make this context read-only. The default context cannot be frozen.
+     * @return this context
+     */
+    public TeXContext freeze() {
+        if (parent == null) {
+            throw new IllegalStateException("The default context cannot be frozen");
+        }
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    public TeXContext getParent() {
+        return parent;
+    }
+
+    public boolean isDefault() {
+        return parent == null;
+    }
+
+    /**
+     * @return a number which changes each time a definition is added in this context, in one
+     * of its parents or in the global registries
+     */
+    long getGeneration() {
+        long g = generation.get();
+        for (TeXContext c = this; c.parent != null; c = c.parent) {
+            g += c.localGeneration.get();
+        }
+        return g;
+    }
+
+    /**
+     * Must be called when a global definition used by the parser is added or modified.
+     */
+    static void changed() {
+        generation.incrementAndGet();
+    }
+
+    MacroInfo getCommand(String name) {
+        for (TeXContext c = this; c.parent != null; c = c.parent) {
+            Map<String, MacroInfo> m = c.commands;
+            if (m != null) {
+                MacroInfo mac = m.get(name);
+                if (mac != null) {
+                    return mac;
+                }
+            }
+        }
+        return MacroInfo.Commands.get(name);
+    }
+
+    String getMacroCode(String name) {
+        for (TeXContext c = this; c.parent != null; c = c.parent) {
+            Map<String, String> m = c.macrocode;
+            if (m != null) {
+                String code = m.get(name);
+                if (code != null) {
+                    return code;
+                }
+            }
+        }
+        return NewCommandMacro.macrocode.get(name);
+    }
+
+    String getMacroReplacement(String name) {
+        for (TeXContext c = this; c.parent != null; c = c.parent) {
+            Map<String, String> m = c.macroreplacement;
+            if (m != null) {
+                String rep = m.get(name);
+                if (rep != null) {
+                    return rep;
+                }
+            }
+        }
+        return NewCommandMacro.macroreplacement.get(name);
+    }
+
+    Color getColor(String name) {
+        for (TeXContext c = this; c.parent != null; c = c.parent) {
+            Map<String, Color> m = c.colors;
+            if (m != null) {
+                Color col = m.get(name);
+                if (col != null) {
+                    return col;
+                }
+            }
+        }
+        return ColorAtom.Colors.get(name);
+    }
+
+    void putMacro(String name, String code, String replacement, MacroInfo mac) throws ParseException {
+        if (parent == null) {
+            NewCommandMacro.macrocode.put(name, code);
+            if (replacement != null) {
+                NewCommandMacro.macroreplacement.put(name, replacement);
+            }
+            MacroInfo.Commands.put(name, mac);
+            // after the definition: a parse which has seen the new generation sees it too
+            changed();
+        } else {
+            synchronized (this) {
+                checkFrozen(name);
+                if (macrocode == null) {
+                    macrocode = new ConcurrentHashMap<String, String>();
+                    commands = new ConcurrentHashMap<String, MacroInfo>();
+                }
+                macrocode.put(name, code);
+                if (replacement != null) {
+                    if (macroreplacement == null) {
+                        macroreplacement = new ConcurrentHashMap<String, String>();
+                    }
+                    macroreplacement.put(name, replacement);
+                }
+                commands.put(name, mac);
+                localGeneration.incrementAndGet();
+            }
+        }
+    }
+
+    void putColor(String name, Color color) throws ParseException {
+        if (parent == null) {
+            ColorAtom.Colors.put(name, color);
+            changed();
+        } else {
+            synchronized (this) {
+                checkFrozen(name);
+                if (colors == null) {
+                    colors = new ConcurrentHashMap<String, Color>();
+                }
+                colors.put(name, color);
+                localGeneration.incrementAndGet();
+            }
+        }
+    }
+
+    private void checkFrozen(String name) throws FrozenContextException {
+        if (frozen) {
+            throw new FrozenContextException("Cannot define " + name + " in a frozen context");
+        }
+    }
+}
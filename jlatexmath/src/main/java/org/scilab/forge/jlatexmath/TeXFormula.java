@@ -64,6 +64,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.imageio.ImageIO;
 import javax.imageio.stream.FileImageOutputStream;
@@ -112,13 +113,13 @@ public class TeXFormula {
     protected static final float PREC = 0.0000001f;
 
     // predefined TeXFormula's
-    public static Map<String, TeXFormula> predefinedTeXFormulas = new HashMap<String, TeXFormula>(150);
+    public static Map<String, TeXFormula> predefinedTeXFormulas = new ConcurrentHashMap<String, TeXFormula>(150);
     public static Map<String, String> predefinedTeXFormulasAsString = new HashMap<String, String>(150);
 
-    // character-to-symbol and character-to-delimiter mappings
-    public static String[] symbolMappings = new String[65536];
-    public static String[] symbolTextMappings = new String[65536];
-    public static String[] symbolFormulaMappings = new String[65536];
+    // character-to-symbol, character-to-text-symbol and character-to-formula mappings
+    private static volatile CodePointTable symbolMappings = CodePointTable.EMPTY;
+    private static volatile CodePointTable symbolTextMappings = CodePointTable.EMPTY;
+    private static volatile CodePointTable symbolFormulaMappings = CodePointTable.EMPTY;
     public static Map<Character.UnicodeBlock, FontInfos> externalFontMap = new HashMap<Character.UnicodeBlock, FontInfos>();
 
     public List<MiddleAtom> middle = new LinkedList<MiddleAtom>();
@@ -126,23 +127,34 @@ public class TeXFormula {
     protected Map<String, String> jlmXMLMap;
     private TeXParser parser;
 
+    // the commands, macros and colors used to parse this formula
+    TeXContext context = TeXContext.getDefault();
+
     static {
+        final long start = System.nanoTime();
         // character-to-symbol and character-to-delimiter mappings
         TeXFormulaSettingsParser parser = new TeXFormulaSettingsParser();
-        parser.parseSymbolMappings(symbolMappings, symbolTextMappings);
+        Map<Integer, String> mappings = new HashMap<Integer, String>();
+        Map<Integer, String> textMappings = new HashMap<Integer, String>();
+        parser.parseSymbolMappings(mappings, textMappings);
+        symbolMappings = symbolMappings.with(mappings);
+        symbolTextMappings = symbolTextMappings.with(textMappings);
 
         new PredefinedCommands();
         new PredefinedTeXFormulas();
         new PredefMacros();
 
-        parser.parseSymbolToFormulaMappings(symbolFormulaMappings, symbolTextMappings);
+        mappings = new HashMap<Integer, String>();
+        textMappings = new HashMap<Integer, String>();
+        parser.parseSymbolToFormulaMappings(mappings, textMappings);
+        symbolFormulaMappings = symbolFormulaMappings.with(mappings);
+        symbolTextMappings = symbolTextMappings.with(textMappings);
 
-        try {
-            DefaultTeXFont.registerAlphabet((AlphabetRegistration) Class.forName("org.scilab.forge.jlatexmath.cyrillic.CyrillicRegistration").newInstance());
-            DefaultTeXFont.registerAlphabet((AlphabetRegistration) Class.forName("org.scilab.forge.jlatexmath.greek.GreekRegistration").newInstance());
-        } catch (Exception e) { }
+        // the Cyrillic and Greek alphabets are registered by DefaultTeXFont.getRegisteredAlphabet
+        // when a character of one of them is met for the first time
 
         //setDefaultDPI();
+        Startup.record("TeXFormula", start);
     }
 
     public static void addSymbolMappings(String file) throws ResourceParseException {
@@ -155,10 +167,41 @@ public class TeXFormula {
         addSymbolMappings(in, file);
     }
 
-    public static void addSymbolMappings(InputStream in, String name) throws ResourceParseException {
+    public static synchronized void addSymbolMappings(InputStream in, String name) throws ResourceParseException {
         TeXFormulaSettingsParser tfsp = new TeXFormulaSettingsParser(in, name);
-        tfsp.parseSymbolMappings(symbolMappings, symbolTextMappings);
-        tfsp.parseSymbolToFormulaMappings(symbolFormulaMappings, symbolTextMappings);
+        Map<Integer, String> mappings = new HashMap<Integer, String>();
+        Map<Integer, String> formulaMappings = new HashMap<Integer, String>();
+        Map<Integer, String> textMappings = new HashMap<Integer, String>();
+        tfsp.parseSymbolMappings(mappings, textMappings);
+        tfsp.parseSymbolToFormulaMappings(formulaMappings, textMappings);
+        symbolMappings = symbolMappings.with(mappings);
+        symbolFormulaMappings = symbolFormulaMappings.with(formulaMappings);
+        symbolTextMappings = symbolTextMappings.with(textMappings);
+        TeXContext.changed();
+    }
+
+    /**
+     * @param codePoint a code point, supplementary ones included
+     * @return the name of the symbol mapped to the code point in math mode or null if there is none
+     */
+    public static String getSymbolMapping(int codePoint) {
+        return symbolMappings.get(codePoint);
+    }
+
+    /**
+     * @param codePoint a code point, supplementary ones included
+     * @return the name of the symbol mapped to the code point in text mode or null if there is none
+     */
+    public static String getSymbolTextMapping(int codePoint) {
+        return symbolTextMappings.get(codePoint);
+    }
+
+    /**
+     * @param codePoint a code point, supplementary ones included
+     * @return the formula mapped to the code point or null if there is none
+     */
+    public static String getSymbolFormulaMapping(int codePoint) {
+        return symbolFormulaMappings.get(codePoint);
     }
 
     public static boolean isRegisteredBlock(Character.UnicodeBlock block) {
@@ -178,12 +221,13 @@ public class TeXFormula {
     public static void registerExternalFont(Character.UnicodeBlock block, String sansserif, String serif) {
         if (sansserif == null && serif == null) {
             externalFontMap.remove(block);
-            return;
-        }
-        externalFontMap.put(block, new FontInfos(sansserif, serif));
-        if (block.equals(Character.UnicodeBlock.BASIC_LATIN)) {
-            predefinedTeXFormulas.clear();
+        } else {
+            externalFontMap.put(block, new FontInfos(sansserif, serif));
+            if (block.equals(Character.UnicodeBlock.BASIC_LATIN)) {
+                predefinedTeXFormulas.clear();
+            }
         }
+        TeXContext.changed();
     }
 
     public static void registerExternalFont(Character.UnicodeBlock block, String fontName) {
@@ -215,6 +259,9 @@ public class TeXFormula {
 
     public boolean isColored = false;
 
+    // not null when the atoms are shared with other formulas (see TeXFormulaCache)
+    private Object layoutLock;
+
     /**
      * Creates an empty TeXFormula.
      *
@@ -245,6 +292,31 @@ public class TeXFormula {
         this(s, (String) null);
     }
 
+    /**
+     * Creates a new TeXFormula by parsing the given string in the given context.
+     * The commands defined in the string (with \newcommand, \definecolor, ...) are added to this context.
+     *
+     * @param s the string to be parsed, it is not copied until a macro is expanded
+     * @param context the context where the commands are looked up and defined
+     * @throws ParseException if the string could not be parsed correctly
+     */
+    public TeXFormula(CharSequence s, TeXContext context) throws ParseException {
+        this.context = context;
+        parser = new TeXParser(context, false, s, this, true);
+        parser.parse();
+    }
+
+    /**
+     * Creates a new TeXFormula by parsing the given string in the given context, the groups
+     * which were parsed for a previous version of the string are reused.
+     */
+    TeXFormula(CharSequence s, TeXContext context, ParseMemo memo) throws ParseException {
+        this.context = context;
+        parser = new TeXParser(context, false, s, this, true);
+        parser.memo = memo;
+        parser.parse();
+    }
+
     public TeXFormula(String s, boolean firstpass) throws ParseException {
         this.textStyle = null;
         parser = new TeXParser(s, this, firstpass);
@@ -276,6 +348,8 @@ public class TeXFormula {
      */
     public TeXFormula(TeXFormula f) {
         if (f != null) {
+            this.context = f.context;
+            this.layoutLock = f.layoutLock;
             addImpl(f);
         }
     }
@@ -286,6 +360,7 @@ public class TeXFormula {
      */
     protected TeXFormula(TeXParser tp) {
         this.jlmXMLMap = tp.formula.jlmXMLMap;
+        this.context = tp.getContext();
         parser = new TeXParser(tp.getIsPartial(), "", this, false);
     }
 
@@ -302,8 +377,10 @@ public class TeXFormula {
     protected TeXFormula(TeXParser tp, String s, boolean firstpass) throws ParseException {
         this.textStyle = null;
         this.jlmXMLMap = tp.formula.jlmXMLMap;
+        this.context = tp.getContext();
         boolean isPartial = tp.getIsPartial();
-        parser = new TeXParser(isPartial, s, this, firstpass);
+        parser = new TeXParser(context, isPartial, tp.getGroupText(s), this, firstpass);
+        parser.memo = tp.memo;
         if (isPartial) {
             try {
                 parser.parse();
@@ -320,8 +397,10 @@ public class TeXFormula {
     protected TeXFormula(TeXParser tp, String s, String textStyle) throws ParseException {
         this.textStyle = textStyle;
         this.jlmXMLMap = tp.formula.jlmXMLMap;
+        this.context = tp.getContext();
         boolean isPartial = tp.getIsPartial();
-        parser = new TeXParser(isPartial, s, this);
+        parser = new TeXParser(context, isPartial, tp.getGroupText(s), this, true);
+        parser.memo = tp.memo;
         if (isPartial) {
             try {
                 parser.parse();
@@ -338,8 +417,10 @@ public class TeXFormula {
     protected TeXFormula(TeXParser tp, String s, String textStyle, boolean firstpass, boolean space) throws ParseException {
         this.textStyle = textStyle;
         this.jlmXMLMap = tp.formula.jlmXMLMap;
+        this.context = tp.getContext();
         boolean isPartial = tp.getIsPartial();
         parser = new TeXParser(isPartial, s, this, firstpass, space);
+        parser.memo = tp.memo;
         if (isPartial) {
             try {
                 parser.parse();
@@ -353,6 +434,13 @@ public class TeXFormula {
         }
     }
 
+    /**
+     * @return the context where the commands of this formula are looked up
+     */
+    public TeXContext getContext() {
+        return context;
+    }
+
     public static TeXFormula getAsText(String text, int alignment) throws ParseException {
         TeXFormula formula = new TeXFormula();
         if (text == null || "".equals(text)) {
@@ -453,7 +541,7 @@ public class TeXFormula {
             // reset parsing variables
             textStyle = null;
             // parse and add the string
-            add(new TeXFormula(s));
+            add(new TeXFormula(s, context));
         }
         return this;
     }
@@ -482,6 +570,9 @@ public class TeXFormula {
     }
 
     private void addImpl(TeXFormula f) {
+        if (layoutLock == null) {
+            layoutLock = f.layoutLock;
+        }
         if (f.root != null) {
             // special copy-treatment for Mrow as a root!!
             if (f.root instanceof RowAtom)
@@ -515,10 +606,12 @@ public class TeXFormula {
 
     public static void addPredefinedTeXFormula(InputStream xmlFile) throws ResourceParseException {
         new PredefinedTeXFormulaParser(xmlFile, "TeXFormula").parse(predefinedTeXFormulas);
+        TeXContext.changed();
     }
 
     public static void addPredefinedCommands(InputStream xmlFile) throws ResourceParseException {
         new PredefinedTeXFormulaParser(xmlFile, "Command").parse(MacroInfo.Commands);
+        TeXContext.changed();
     }
 
     /**
@@ -578,10 +671,24 @@ public class TeXFormula {
     private Box createBox(TeXEnvironment style) {
         if (root == null)
             return new StrutBox(0, 0, 0, 0);
-        else
+        else if (layoutLock != null) {
+            // some atoms keep a state during the layout
+            synchronized (layoutLock) {
+                return root.createBox(style);
+            }
+        } else
             return root.createBox(style);
     }
 
+    /**
+     * Mark this formula as shared: its atoms can be laid out by several threads.
+     */
+    void share() {
+        if (layoutLock == null) {
+            layoutLock = new Object();
+        }
+    }
+
     private DefaultTeXFont createFont(float size, int type) {
         DefaultTeXFont dtf = new DefaultTeXFont(size);
         if (type == 0) {
@@ -872,7 +979,7 @@ public class TeXFormula {
      * @return the generated image
      */
     public static Image createBufferedImage(String formula, int style, float size, Color fg, Color bg) throws ParseException {
-        TeXFormula f = new TeXFormula(formula);
+        TeXFormula f = TeXFormulaCache.get(formula);
         TeXIcon icon = f.createTeXIcon(style, size);
         icon.setInsets(new Insets(2, 2, 2, 2));
         int w = icon.getIconWidth(), h = icon.getIconHeight();
@@ -995,16 +1102,23 @@ public class TeXFormula {
             if (f == null) {
                 throw new FormulaNotFoundException(name);
             }
-            TeXFormula tf = new TeXFormula(f);
-            if (!(tf.root instanceof RowAtom)) {
-                // depending of the context a RowAtom can be modified
-                // so we can't reuse it
-                predefinedTeXFormulas.put(name, tf);
+            formula = new TeXFormula(f);
+            if (formula.root instanceof Row && (formula.root.getClass() != RowAtom.class || !((RowAtom) formula.root).canBeTemplate())) {
+                // only the plain rows can be copied when the template is used, the
+                // formulas containing other rows are parsed at each use
+                return formula;
             }
-            return tf;
-        } else {
-            return new TeXFormula(formula);
+            // the parsed formula is a template: it is never modified, each use gets a copy
+            // of its rows and shares its other atoms
+            predefinedTeXFormulas.put(name, formula);
+        }
+
+        TeXFormula tf = new TeXFormula(formula);
+        if (formula.root instanceof RowAtom) {
+            // the rows are modified by the parser and keep a state during the layout
+            tf.root = ((RowAtom) formula.root).copy();
         }
+        return tf;
     }
 
     static class FontInfos {
@@ -0,0 +1,227 @@
+/* TeXFormulaCache.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of parsed formulas: a formula rendered several times (e.g. at different sizes or
+ * with different colors) is parsed only once.
+ * The key is the LaTeX source, the context used to parse it and the generation of this
+ * context. A definition (<code>\newcommand</code>, <code>\definecolor</code>, ...) in a
+ * derived context only changes the generation of this context and of the contexts derived
+ * from it, so the entries of the other contexts are still used. A global definition (a new
+ * alphabet, a definition in the default context, ...) changes the generation of all the
+ * contexts. A source which defines something is never cached.
+ * The returned formulas share their atoms with the cached one so they are laid out one at
+ * a time, but they can be modified and rendered without affecting the cache.
+ */
+public final class TeXFormulaCache {
+
+    /**
+     * Default max number of cached formulas
+     */
+    public static final int DEFAULT_MAX_FORMULAS = 1024;
+
+    private static final LinkedHashMap<Key, TeXFormula> cache = new LinkedHashMap<Key, TeXFormula>(128, 0.75f, true);
+    private static int max = DEFAULT_MAX_FORMULAS;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    private TeXFormulaCache() { }
+
+    /**
+     * Get a formula parsed in the default context.
+     * @param latex the formula
+     * @return a copy of the cached formula
+     * @throws ParseException if the string could not be parsed correctly
+     */
+    public static TeXFormula get(String latex) throws ParseException {
+        return get(latex, TeXContext.getDefault());
+    }
+
+    /**
+     * Get a formula parsed in the given context.
+     * @param latex the formula
+     * @param context the context used to parse the formula
+     * @return a copy of the cached formula
+     * @throws ParseException if the string could not be parsed correctly
+     */
+    public static TeXFormula get(String latex, TeXContext context) throws ParseException {
+        final long generation = context.getGeneration();
+        final Key key = new Key(latex, context, generation);
+        TeXFormula f;
+        synchronized (cache) {
+            f = cache.get(key);
+        }
+        if (f != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            f = new TeXFormula(latex, context);
+            if (context.getGeneration() != generation) {
+                // the parse defined something: it must be done again the next time
+                return f;
+            }
+            f.share();
+            synchronized (cache) {
+                cache.put(key, f);
+                evict();
+            }
+        }
+
+        return new TeXFormula(f);
+    }
+
+    /**
+     * Set the max number of cached formulas.
+     * @param max the max size
+     */
+    public static void setMaxCachedObjects(int max) {
+        synchronized (cache) {
+            TeXFormulaCache.max = Math.max(max, 0);
+            evict();
+        }
+    }
+
+    /**
+     * @return the max number of cached formulas
+     */
+    public static int getMaxCachedObjects() {
+        synchronized (cache) {
+            return max;
+        }
+    }
+
+    /**
+     * @return the number of cached formulas
+     */
+    public static int getCachedObjects() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * @return the number of requests which have found their formula in the cache
+     */
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of requests which have needed to parse their formula
+     */
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of formulas removed to keep the cache in its bounds
+     */
+    public static long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Reset the hit, miss and eviction counters
+     */
+    public static void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    /**
+     * Clear the cache
+     */
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Must be called with the lock on cache.
+     */
+    private static void evict() {
+        Iterator<TeXFormula> iter = cache.values().iterator();
+        while (cache.size() > max && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static class Key {
+
+        final String latex;
+        final TeXContext context;
+        final long generation;
+
+        Key(String latex, TeXContext context, long generation) {
+            this.latex = latex;
+            this.context = context;
+            this.generation = generation;
+        }
+
+        public boolean equals(Object o) {
+            if (o instanceof Key) {
+                Key k = (Key) o;
+                return generation == k.generation && context == k.context && latex.equals(k.latex);
+            }
+            return false;
+        }
+
+        public int hashCode() {
+            return latex.hashCode() ^ System.identityHashCode(context) ^ (int) generation;
+        }
+    }
+}
@@ -47,6 +47,7 @@
 package org.scilab.forge.jlatexmath;
 
 import java.io.InputStream;
+import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 
@@ -62,9 +63,13 @@ public class TeXFormulaSettingsParser {
     public static final String CHARTODEL_MAPPING_EL = "Map";
 
     private Element root;
+    private Snapshot snapshot;
 
     public TeXFormulaSettingsParser() throws ResourceParseException {
-        this(GlueSettingsParser.class.getResourceAsStream(RESOURCE_NAME), RESOURCE_NAME);
+        snapshot = Snapshot.get();
+        if (snapshot == null) {
+            root = Startup.getDocument(RESOURCE_NAME);
+        }
     }
 
     public TeXFormulaSettingsParser(InputStream file, String name) throws ResourceParseException {
@@ -78,19 +83,36 @@ public class TeXFormulaSettingsParser {
         }
     }
 
-    public void parseSymbolToFormulaMappings(String[] mappings, String[] textMappings) throws ResourceParseException {
-        Element charToSymbol = (Element)root.getElementsByTagName("CharacterToFormulaMappings").item(0);
+    /**
+     * @return the root of the resource, it is only parsed when there is no snapshot or when
+     *         a table cannot be read from it
+     */
+    private Element getRoot() throws ResourceParseException {
+        if (root == null) {
+            root = Startup.getDocument(RESOURCE_NAME);
+        }
+        return root;
+    }
+
+    public void parseSymbolToFormulaMappings(Map<Integer, String> mappings, Map<Integer, String> textMappings) throws ResourceParseException {
+        if (snapshot != null && snapshot.readSymbolToFormulaMappings(mappings, textMappings)) {
+            return;
+        }
+        Element charToSymbol = (Element)getRoot().getElementsByTagName("CharacterToFormulaMappings").item(0);
         if (charToSymbol != null) // element present
             addFormulaToMap(charToSymbol.getElementsByTagName("Map"), mappings, textMappings);
     }
 
-    public void parseSymbolMappings(String[] mappings, String[] textMappings) throws ResourceParseException {
-        Element charToSymbol = (Element)root.getElementsByTagName("CharacterToSymbolMappings").item(0);
+    public void parseSymbolMappings(Map<Integer, String> mappings, Map<Integer, String> textMappings) throws ResourceParseException {
+        if (snapshot != null && snapshot.readSymbolMappings(mappings, textMappings)) {
+            return;
+        }
+        Element charToSymbol = (Element)getRoot().getElementsByTagName("CharacterToSymbolMappings").item(0);
         if (charToSymbol != null) // element present
             addToMap(charToSymbol.getElementsByTagName("Map"), mappings, textMappings);
     }
 
-    private static void addToMap(NodeList mapList, String[] tableMath, String[] tableText) throws ResourceParseException {
+    private static void addToMap(NodeList mapList, Map<Integer, String> tableMath, Map<Integer, String> tableText) throws ResourceParseException {
         for (int i = 0; i < mapList.getLength(); i++) {
             Element map = (Element) mapList.item(i);
             String ch = map.getAttribute("char");
@@ -103,20 +125,20 @@ public class TeXFormulaSettingsParser {
                 throw new XMLResourceParseException(RESOURCE_NAME, map.getTagName(), "symbol", null);
             }
 
-            if (ch.length() == 1) {// valid element found
-                tableMath[ch.charAt(0)] =  symbol;
+            if (ch.codePointCount(0, ch.length()) == 1) {// valid element found
+                tableMath.put(ch.codePointAt(0), symbol);
             } else {
                 // only single-character mappings allowed, ignore others
-                throw new XMLResourceParseException(RESOURCE_NAME, map.getTagName(), "char", "must have a value that contains exactly 1 character!");
+                throw new XMLResourceParseException(RESOURCE_NAME, map.getTagName(), "char", "must have a value that contains exactly 1 code point!");
             }
 
             if (tableText != null && !text.equals("")) {
-                tableText[ch.charAt(0)] = text;
+                tableText.put(ch.codePointAt(0), text);
             }
         }
     }
 
-    private static void addFormulaToMap(NodeList mapList, String[] tableMath, String[] tableText) throws ResourceParseException {
+    private static void addFormulaToMap(NodeList mapList, Map<Integer, String> tableMath, Map<Integer, String> tableText) throws ResourceParseException {
         for (int i = 0; i < mapList.getLength(); i++) {
             Element map = (Element)mapList.item(i);
             String ch = map.getAttribute("char");
@@ -129,16 +151,16 @@ public class TeXFormulaSettingsParser {
             else if (formula.equals(""))
                 throw new XMLResourceParseException(RESOURCE_NAME, map.getTagName(),
                                                     "formula", null);
-            if (ch.length() == 1) {// valid element found
-                tableMath[ch.charAt(0)] = formula;
+            if (ch.codePointCount(0, ch.length()) == 1) {// valid element found
+                tableMath.put(ch.codePointAt(0), formula);
             } else
                 // only single-character mappings allowed, ignore others
                 throw new XMLResourceParseException(RESOURCE_NAME, map.getTagName(),
                                                     "char",
-                                                    "must have a value that contains exactly 1 character!");
+                                                    "must have a value that contains exactly 1 code point!");
 
             if (tableText != null && !text.equals("")) {
-                tableText[ch.charAt(0)] = text;
+                tableText.put(ch.codePointAt(0), text);
             }
         }
     }
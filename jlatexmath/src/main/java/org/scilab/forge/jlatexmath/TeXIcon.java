@@ -83,6 +83,8 @@ public class TeXIcon implements Icon {
 
     private Color fg = null;
 
+    private volatile DisplayList list;
+
     public boolean isColored = false;
 
     /**
@@ -123,6 +125,14 @@ public class TeXIcon implements Icon {
         this.fg = fg;
     }
 
+    Color getForeground() {
+        return fg;
+    }
+
+    float getSize() {
+        return size;
+    }
+
     /**
      * Get the insets of the TeXIcon.
      *
@@ -266,7 +276,17 @@ public class TeXIcon implements Icon {
         }
 
         // draw formula box
-        box.draw(g2, (x + insets.left) / size, (y + insets.top) / size+ box.getHeight());
+        float bx = (x + insets.left) / size, by = (y + insets.top) / size+ box.getHeight();
+        if (Box.DEBUG) {
+            box.draw(g2, bx, by);
+        } else {
+            // the box tree is flattened once and replayed at each repaint
+            DisplayList l = list;
+            if (l == null || !l.isFor(box)) {
+                list = l = new DisplayList(box);
+            }
+            l.draw(g2, bx, by);
+        }
 
         // restore graphics settings
         g2.setRenderingHints(oldHints);
@@ -56,7 +56,8 @@ public class TeXParser {
 
     TeXFormula formula;
 
-    private StringBuffer parseString;
+    private TeXContext context;
+    private ParseBuffer parseString;
     private int pos;
     private int spos;
     private int line;
@@ -69,6 +70,9 @@ public class TeXParser {
     private boolean ignoreWhiteSpace = true;
     private boolean isPartial;
 
+    // the groups of the previous parse when the formula is edited
+    ParseMemo memo;
+
     // the escape character
     private static final char ESCAPE = '\\';
 
@@ -121,7 +125,13 @@ public class TeXParser {
     private static final char SUBLPAR = '\u208D';
     private static final char SUBRPAR = '\u208E';
 
-    protected static boolean isLoading = false;
+    // true in the thread which is loading an alphabet
+    protected static final ThreadLocal<Boolean> isLoading = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return Boolean.FALSE;
+        }
+    };
 
     private static final Set<String> unparsedContents = new HashSet<String>(6);
     static {
@@ -167,10 +177,24 @@ public class TeXParser {
      * @throws ParseException if the string could not be parsed correctly
      */
     public TeXParser(boolean isPartial, String parseString, TeXFormula formula, boolean firstpass) {
+        this(formula.getContext(), isPartial, parseString, formula, firstpass);
+    }
+
+    /**
+     * Create a new TeXParser with or without a first pass, using the commands and macros of the given context
+     *
+     * @param context the context where the commands and the macros are looked up and defined
+     * @param isPartial if true certains exceptions are not thrown
+     * @param parseString the string to be parsed, it is not copied until a macro is expanded
+     * @param firstpass a boolean to indicate if the parser must replace the user-defined macros by their content
+     * @throws ParseException if the string could not be parsed correctly
+     */
+    public TeXParser(TeXContext context, boolean isPartial, CharSequence parseString, TeXFormula formula, boolean firstpass) {
+        this.context = context;
         this.formula = formula;
         this.isPartial = isPartial;
         if (parseString != null) {
-            this.parseString = new StringBuffer(parseString);
+            this.parseString = parseString instanceof ParseBuffer ? (ParseBuffer) parseString : new ParseBuffer(parseString);
             this.len = parseString.length();
             this.pos = 0;
             if (firstpass) {
@@ -222,6 +246,35 @@ public class TeXParser {
         arrayMode = true;
     }
 
+    /**
+     * Create a new TeXParser in the context of an array, with the same context as the parser tp.
+     *
+     * @param tp the parser which handles the array environment
+     * @param parseString the string to be parsed
+     * @param aoa an ArrayOfAtoms where to put the elements
+     * @param firstpass a boolean to indicate if the parser must replace the user-defined macros by their content
+     * @throws ParseException if the string could not be parsed correctly
+     */
+    public TeXParser(TeXParser tp, String parseString, ArrayOfAtoms aoa, boolean firstpass) {
+        this(tp.context, tp.isPartial, parseString, aoa, firstpass);
+        arrayMode = true;
+    }
+
+    /**
+     * Create a new TeXParser in the context of an array, with the same context as the parser tp.
+     *
+     * @param tp the parser which handles the array environment
+     * @param parseString the string to be parsed
+     * @param aoa an ArrayOfAtoms where to put the elements
+     * @param firstpass a boolean to indicate if the parser must replace the user-defined macros by their content
+     * @param space a boolean to indicate if the parser must ignore or not the white space
+     * @throws ParseException if the string could not be parsed correctly
+     */
+    public TeXParser(TeXParser tp, String parseString, ArrayOfAtoms aoa, boolean firstpass, boolean space) {
+        this(tp, parseString, aoa, firstpass);
+        this.ignoreWhiteSpace = space;
+    }
+
     /**
      * Create a new TeXParser in the context of an array. When the parser meets a &amp; a new atom is added in the current line and when a \\ is met, a new line is created.
      *
@@ -265,7 +318,7 @@ public class TeXParser {
      * Reset the parser with a new latex expression
      */
     public void reset(String latex) {
-        parseString = new StringBuffer(latex);
+        parseString = new ParseBuffer(latex);
         len = parseString.length();
         formula.root = null;
         pos = 0;
@@ -280,6 +333,21 @@ public class TeXParser {
         firstpass();
     }
 
+    /** Return the context where the commands and the macros are looked up
+     */
+    public TeXContext getContext() {
+        return context;
+    }
+
+    /**
+     * @return the key of the group between start and end in a ParseMemo
+     */
+    private String getMemoKey(int start, int end) {
+        final StringBuilder buf = new StringBuilder(end - start + 3);
+        buf.append(isPartial ? 'p' : 'c').append(ignoreWhiteSpace ? 'm' : 't').append((char) ('0' + atIsLetter));
+        return buf.append(parseString.subSequence(start, end)).toString();
+    }
+
     /** Return true if we get a partial formula
      */
     public boolean getIsPartial() {
@@ -409,7 +477,7 @@ public class TeXParser {
                     com = getCommand();
                     if ("newcommand".equals(com) || "renewcommand".equals(com)) {
                         args = getOptsArgs(2, 2);
-                        mac = MacroInfo.Commands.get(com);
+                        mac = context.getCommand(com);
                         try {
                             mac.invoke(this, args);
                         } catch (ParseException e) {
@@ -420,8 +488,8 @@ public class TeXParser {
                         parseString.delete(spos, pos);
                         len = parseString.length();
                         pos = spos;
-                    } else if (NewCommandMacro.isMacro(com)) {
-                        mac = MacroInfo.Commands.get(com);
+                    } else if (NewCommandMacro.isMacro(context, com)) {
+                        mac = context.getCommand(com);
                         args = getOptsArgs(mac.nbArgs, mac.hasOptions ? 1 : 0);
                         args[0] = com;
                         try {
@@ -437,7 +505,7 @@ public class TeXParser {
                         pos = spos;
                     } else if ("begin".equals(com)) {
                         args = getOptsArgs(1, 0);
-                        mac = MacroInfo.Commands.get(args[1] + "@env");
+                        mac = context.getCommand(args[1] + "@env");
                         if (mac == null) {
                             if (!isPartial) {
                                 throw new ParseException("Unknown environment: " + args[1] + " at position " + getLine() + ":" + getCol());
@@ -772,8 +840,14 @@ public class TeXParser {
                     pos++;
                     break;
                 default :
-                    formula.add(convertCharacter(ch, false));
-                    pos++;
+                    Atom mapped = convertCodePoint();
+                    if (mapped != null) {
+                        formula.add(mapped);
+                        pos += 2;
+                    } else {
+                        formula.add(convertCharacter(ch, false));
+                        pos++;
+                    }
                 }
             }
         }
@@ -867,30 +941,19 @@ public class TeXParser {
         if (pos == len)
             return null;
 
-        int group, spos;
+        int spos;
         char ch = parseString.charAt(pos);
 
         if (pos < len && ch == open) {
-            group = 1;
             spos = pos;
-            while (pos < len - 1 && group != 0) {
-                pos++;
-                ch = parseString.charAt(pos);
-                if (ch == open)
-                    group++;
-                else if (ch == close)
-                    group--;
-                else if (ch == ESCAPE && pos != len - 1)
-                    pos++;
-            }
-
-            pos++;
-
-            if (group != 0) {
-                return parseString.substring(spos + 1, pos);
+            final int end = parseString.findClose(pos, open, close);
+            if (end == -1) {
+                pos = len;
+                return parseString.group(spos + 1, len);
             }
+            pos = end + 1;
 
-            return parseString.substring(spos + 1, pos - 1);
+            return parseString.group(spos + 1, end);
         } else {
             throw new ParseException("missing '" + open + "'!");
         }
@@ -994,19 +1057,47 @@ public class TeXParser {
             return new EmptyAtom();
         }
         if (ch == L_GROUP) {
-            TeXFormula tf = new TeXFormula();
-            TeXFormula sformula = this.formula;
-            this.formula = tf;
-            pos++;
-            group++;
-            parse();
-            this.formula = sformula;
+            Atom root;
+            RowAtom row = null;
+            String key = null;
+            int end = -1;
+            if (memo != null && !arrayMode && !insertion) {
+                end = parseString.findClose(pos, L_GROUP, R_GROUP);
+                if (end != -1) {
+                    key = getMemoKey(pos, end + 1);
+                    row = memo.take(key);
+                }
+            }
+            if (row != null) {
+                // the group has the same source as in the previous parse
+                pos = end + 1;
+                root = new RowAtom(row);
+                ((RowAtom) root).lookAtLastAtom = row.lookAtLastAtom;
+            } else {
+                TeXFormula tf = new TeXFormula();
+                TeXFormula sformula = this.formula;
+                int atl = atIsLetter;
+                long generation = context.getGeneration();
+                this.formula = tf;
+                pos++;
+                group++;
+                parse();
+                this.formula = sformula;
+                root = tf.root;
+                if (key != null && !insertion && atl == atIsLetter && generation == context.getGeneration()
+                    && root != null && root.getClass() == RowAtom.class) {
+                    if (pos == end + 1) {
+                        memo.put(key, (RowAtom) root);
+                        root = new RowAtom(root);
+                    }
+                }
+            }
             if (this.formula.root == null) {
                 RowAtom at = new RowAtom();
-                at.add(tf.root);
+                at.add(root);
                 return at;
             }
-            return tf.root;
+            return root;
         }
 
         if (ch == ESCAPE) {
@@ -1018,7 +1109,12 @@ public class TeXParser {
             return at;
         }
 
-        Atom at = convertCharacter(ch, true);
+        Atom at = convertCodePoint();
+        if (at != null) {
+            pos += 2;
+            return at;
+        }
+        at = convertCharacter(ch, true);
         pos++;
         return at;
     }
@@ -1106,21 +1202,21 @@ public class TeXParser {
     public Atom convertCharacter(char c, boolean oneChar) throws ParseException {
         if (ignoreWhiteSpace) {// The Unicode Greek letters in math mode are not drawn with the Greek font
             if (c >= 945 && c <= 969) {
-                return SymbolAtom.get(TeXFormula.symbolMappings[c]);
+                return SymbolAtom.get(TeXFormula.getSymbolMapping(c));
             } else if (c >= 913 && c <= 937) {
-                return new TeXFormula(TeXFormula.symbolFormulaMappings[c]).root;
+                return new TeXFormula(TeXFormula.getSymbolFormulaMapping(c)).root;
             }
         }
 
         c = convertToRomanNumber(c);
         if (((c < '0' || c > '9') && (c < 'a' || c > 'z') && (c < 'A' || c > 'Z'))) {
             Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
-            if (!isLoading && !DefaultTeXFont.loadedAlphabets.contains(block)) {
-                DefaultTeXFont.addAlphabet(DefaultTeXFont.registeredAlphabets.get(block));
+            if (!isLoading.get() && !DefaultTeXFont.loadedAlphabets.contains(block)) {
+                DefaultTeXFont.addAlphabet(DefaultTeXFont.getRegisteredAlphabet(block));
             }
 
-            String symbolName = TeXFormula.symbolMappings[c];
-            if (symbolName == null && (TeXFormula.symbolFormulaMappings == null || TeXFormula.symbolFormulaMappings[c] == null)) {
+            String symbolName = TeXFormula.getSymbolMapping(c);
+            if (symbolName == null && TeXFormula.getSymbolFormulaMapping(c) == null) {
                 TeXFormula.FontInfos fontInfos = null;
                 boolean isLatin = Character.UnicodeBlock.BASIC_LATIN.equals(block);
                 if ((isLatin && TeXFormula.isRegisteredBlock(Character.UnicodeBlock.BASIC_LATIN)) || !isLatin) {
@@ -1150,23 +1246,7 @@ public class TeXParser {
                     return new ColorAtom(new RomanAtom(new TeXFormula("\\text{(Unknown char " + ((int) c) + ")}").root), null, Color.RED);
                 }
             } else {
-                if (!ignoreWhiteSpace) {// we are in text mode
-                    if (TeXFormula.symbolTextMappings[c] != null) {
-                        return SymbolAtom.get(TeXFormula.symbolTextMappings[c]).setUnicode(c);
-                    }
-                }
-                if (TeXFormula.symbolFormulaMappings != null && TeXFormula.symbolFormulaMappings[c] != null) {
-                    return new TeXFormula(TeXFormula.symbolFormulaMappings[c]).root;
-                }
-
-                try {
-                    return SymbolAtom.get(symbolName);
-                } catch (SymbolNotFoundException e) {
-                    throw new ParseException("The character '"
-                                             + Character.toString(c)
-                                             + "' was mapped to an unknown symbol with the name '"
-                                             + symbolName + "'!", e);
-                }
+                return convertMapped(c, symbolName);
             }
         } else {
             // alphanumeric character
@@ -1192,6 +1272,63 @@ public class TeXParser {
         }
     }
 
+    /** Convert a supplementary character in the corresponding atom in using the file TeXFormulaSettings.xml
+     * @param codePoint the code point to be converted
+     * @return the corresponding atom or null if the code point is not mapped
+     * @throws ParseException if the code point is mapped to an unknown symbol
+     */
+    Atom convertCodePoint(int codePoint) throws ParseException {
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(codePoint);
+        if (!isLoading.get() && !DefaultTeXFont.loadedAlphabets.contains(block)) {
+            DefaultTeXFont.addAlphabet(DefaultTeXFont.getRegisteredAlphabet(block));
+        }
+
+        String symbolName = TeXFormula.getSymbolMapping(codePoint);
+        if (symbolName == null && TeXFormula.getSymbolFormulaMapping(codePoint) == null) {
+            return null;
+        }
+        return convertMapped(codePoint, symbolName);
+    }
+
+    /**
+     * Convert the surrogate pair at the current position if its code point is mapped
+     * @return the corresponding atom or null if there is no mapped surrogate pair
+     */
+    private Atom convertCodePoint() throws ParseException {
+        if (pos + 1 < len) {
+            char hi = parseString.charAt(pos);
+            char lo = parseString.charAt(pos + 1);
+            if (Character.isSurrogatePair(hi, lo)) {
+                return convertCodePoint(Character.toCodePoint(hi, lo));
+            }
+        }
+        return null;
+    }
+
+    private Atom convertMapped(int codePoint, String symbolName) throws ParseException {
+        if (!ignoreWhiteSpace) {// we are in text mode
+            String text = TeXFormula.getSymbolTextMapping(codePoint);
+            if (text != null) {
+                SymbolAtom sym = SymbolAtom.get(text);
+                // the small capitals are only used for the BMP characters
+                return Character.isBmpCodePoint(codePoint) ? sym.setUnicode((char) codePoint) : sym;
+            }
+        }
+        String formulaMapping = TeXFormula.getSymbolFormulaMapping(codePoint);
+        if (formulaMapping != null) {
+            return new TeXFormula(formulaMapping).root;
+        }
+
+        try {
+            return SymbolAtom.get(symbolName);
+        } catch (SymbolNotFoundException e) {
+            throw new ParseException("The character '"
+                                     + new String(Character.toChars(codePoint))
+                                     + "' was mapped to an unknown symbol with the name '"
+                                     + symbolName + "'!", e);
+        }
+    }
+
     private String getCommand() {
         int spos = ++pos;
         char ch = '\0';
@@ -1227,7 +1364,7 @@ public class TeXParser {
             return new EmptyAtom();
         }
 
-        if (MacroInfo.Commands.get(command) != null)
+        if (context.getCommand(command) != null)
             return processCommands(command);
 
         try {
@@ -1246,6 +1383,14 @@ public class TeXParser {
         }
     }
 
+    /**
+     * @param group a string which can have been returned by getGroup
+     * @return the text to give to a parser parsing group
+     */
+    CharSequence getGroupText(String group) {
+        return parseString == null || group == null ? group : parseString.sub(group);
+    }
+
     private void insert(int beg, int end, String formula) {
         parseString.replace(beg, end, formula);
         len = parseString.length();
@@ -1335,7 +1480,7 @@ public class TeXParser {
             return getGroup("\\left", "\\right");
         }
 
-        MacroInfo mac = MacroInfo.Commands.get(command);
+        MacroInfo mac = context.getCommand(command);
         if (mac != null) {
             int mac_opts = 0;
             if (mac.hasOptions) {
@@ -1370,7 +1515,7 @@ public class TeXParser {
      * in the parse string).
      */
     private Atom processCommands(String command) throws ParseException {
-        MacroInfo mac = MacroInfo.Commands.get(command);
+        MacroInfo mac = context.getCommand(command);
         int opts = 0;
         if (mac.hasOptions)
             opts = mac.posOpts;
@@ -1378,7 +1523,7 @@ public class TeXParser {
         String[] args = getOptsArgs(mac.nbArgs, opts);
         args[0] = command;
 
-        if (NewCommandMacro.isMacro(command)) {
+        if (NewCommandMacro.isMacro(context, command)) {
             String ret = (String) mac.invoke(this, args);
             insert(spos, pos, ret);
             return null;
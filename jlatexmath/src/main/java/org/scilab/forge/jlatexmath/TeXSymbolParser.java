@@ -66,9 +66,15 @@ public class TeXSymbolParser {
     private static Map<String,Integer> typeMappings = new HashMap<String,Integer>();
 
     private Element root;
+    private Snapshot snapshot;
 
     public TeXSymbolParser() throws ResourceParseException {
-        this(TeXSymbolParser.class.getResourceAsStream(RESOURCE_NAME), RESOURCE_NAME);
+        snapshot = Snapshot.get();
+        if (snapshot == null) {
+            root = Startup.getDocument(RESOURCE_NAME);
+        }
+        // set possible valid symbol type mappings
+        setTypeMappings();
     }
 
     public TeXSymbolParser(InputStream file, String name) throws ResourceParseException {
@@ -84,10 +90,25 @@ public class TeXSymbolParser {
         }
     }
 
+    /**
+     * @return the root of the resource, it is only parsed when there is no snapshot or when
+     *         a table cannot be read from it
+     */
+    private Element getRoot() throws ResourceParseException {
+        if (root == null) {
+            root = Startup.getDocument(RESOURCE_NAME);
+        }
+        return root;
+    }
+
     public Map<String,SymbolAtom> readSymbols() throws ResourceParseException {
+        Map<String,SymbolAtom> fromSnapshot = snapshot == null ? null : snapshot.readSymbols();
+        if (fromSnapshot != null) {
+            return fromSnapshot;
+        }
         Map<String,SymbolAtom> res = new HashMap<String,SymbolAtom>();
         // iterate all "symbol"-elements
-        NodeList list = root.getElementsByTagName("Symbol");
+        NodeList list = getRoot().getElementsByTagName("Symbol");
         for (int i = 0; i < list.getLength(); i++) {
             Element symbol = (Element)list.item(i);
             // retrieve and check required attributes
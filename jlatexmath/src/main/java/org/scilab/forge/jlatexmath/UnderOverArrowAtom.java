@@ -67,7 +67,7 @@ public class UnderOverArrowAtom extends Atom {
 
     public Box createBox(TeXEnvironment env) {
         Box b = base != null ? base.createBox(env) : new StrutBox(0, 0, 0, 0);
-        float sep = new SpaceAtom(TeXConstants.UNIT_POINT, 1f, 0, 0).createBox(env).getWidth();
+        float sep = SpaceAtom.getFactor(TeXConstants.UNIT_POINT, env);
         Box arrow;
 
         if (dble) {
@@ -59,7 +59,7 @@ public class UnderscoreAtom extends Atom {
     public Box createBox(TeXEnvironment env) {
         float drt = env.getTeXFont().getDefaultRuleThickness(env.getStyle());
         HorizontalBox hb = new HorizontalBox(s.createBox(env));
-        hb.add(new HorizontalRule(drt, w.createBox(env).getWidth(), 0));
+        hb.add(new HorizontalRule(drt, 0.7f * SpaceAtom.getFactor(TeXConstants.UNIT_EM, env), 0));
         return hb;
     }
 }
@@ -58,7 +58,8 @@ public class VRowAtom extends Atom {
 
     // atoms to be displayed horizontally next to eachother
     protected LinkedList<Atom> elements = new LinkedList<Atom>();
-    private SpaceAtom raise = new SpaceAtom(TeXConstants.UNIT_EX, 0, 0, 0);
+    private int raiseUnit = TeXConstants.UNIT_EX;
+    private float raise = 0;
     protected boolean addInterline = false;
     protected boolean vtop = false;
     protected int halign = TeXConstants.ALIGN_NONE;
@@ -102,7 +103,8 @@ public class VRowAtom extends Atom {
     }
 
     public void setRaise(int unit, float r) {
-        raise = new SpaceAtom(unit, r, 0, 0);
+        raiseUnit = unit;
+        raise = r;
     }
 
     public Atom getLastAtom() {
@@ -153,13 +155,13 @@ public class VRowAtom extends Atom {
             }
         }
 
-        vb.setShift(-raise.createBox(env).getWidth());
+        vb.setShift(-raise * SpaceAtom.getFactor(raiseUnit, env));
         if (vtop) {
-            float t = vb.getSize() == 0 ? 0 : vb.children.getFirst().getHeight();
+            float t = vb.getSize() == 0 ? 0 : vb.children.get(0).getHeight();
             vb.setHeight(t);
             vb.setDepth(vb.getDepth() + vb.getHeight() - t);
         } else {
-            float t = vb.getSize() == 0 ? 0 : vb.children.getLast().getDepth();
+            float t = vb.getSize() == 0 ? 0 : vb.children.get(vb.getSize() - 1).getDepth();
             vb.setHeight(vb.getDepth() + vb.getHeight() - t);
             vb.setDepth(t);
         }
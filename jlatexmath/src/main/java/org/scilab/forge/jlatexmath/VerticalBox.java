@@ -119,6 +119,15 @@ class VerticalBox extends Box {
         }
     }
 
+    void paint(BoxPainter p, float x, float y) {
+        float yPos = y - height;
+        for (Box b : children) {
+            yPos += b.getHeight();
+            b.paint(p, x + b.getShift() - leftMostPos, yPos);
+            yPos += b.getDepth();
+        }
+    }
+
     public int getSize() {
         return children.size();
     }
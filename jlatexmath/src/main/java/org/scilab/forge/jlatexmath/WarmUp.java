@@ -0,0 +1,115 @@
+/* WarmUp.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Initialize the library in a background thread.
+ * A short-lived program can start the warm-up first and do its own work (reading its input,
+ * building its UI, ...) while the resources are parsed, the fonts decoded and Java2D
+ * initialized. A formula created in the meantime just waits for the classes being
+ * initialized by the warm-up thread, nothing is done twice.
+ * This class doesn't initialize anything itself, so calling it does not block.
+ */
+public final class WarmUp {
+
+    // uses the fonts, the symbols, the predefined formulas and the macros of most formulas
+    private static final String SAMPLE = "\\sqrt{x_1^2+\\alpha}=\\frac{\\mathrm{d}y}{\\sum_{i=1}^n i}\\begin{pmatrix}a\\\\b\\end{pmatrix}";
+
+    private WarmUp() { }
+
+    /**
+     * Start the warm-up with the fonts of the usual formulas only.
+     * @return a future which is done when the library is initialized
+     */
+    public static Future<Void> start() {
+        return start(false);
+    }
+
+    /**
+     * Start the warm-up in a daemon thread.
+     * @param allFonts true to decode all the fonts which have been described, not only
+     * the ones of the usual formulas
+     * @return a future which is done when the library is initialized, a failure of the
+     * initialization is thrown by its get method
+     */
+    public static Future<Void> start(final boolean allFonts) {
+        FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+            public Void call() throws Exception {
+                run(allFonts);
+                return null;
+            }
+        });
+        Thread thread = new Thread(task, "jlatexmath-warmup");
+        thread.setDaemon(true);
+        thread.start();
+
+        return task;
+    }
+
+    /**
+     * Initialize the library in the current thread.
+     * @param allFonts true to decode all the fonts which have been described
+     */
+    public static void run(boolean allFonts) throws ParseException {
+        Startup.start();
+        TeXIcon icon = new TeXFormula(SAMPLE).createTeXIcon(TeXConstants.STYLE_DISPLAY, 20);
+        if (allFonts) {
+            FontInfo.preloadAll();
+        }
+
+        BufferedImage image = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        icon.paintIcon(null, g2, 0, 0);
+        g2.dispose();
+        Rasterizer.paint(icon, image, 0, 0);
+    }
+}
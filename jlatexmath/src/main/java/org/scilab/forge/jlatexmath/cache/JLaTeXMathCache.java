@@ -51,27 +51,38 @@ import java.awt.Image;
 import java.awt.Insets;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
-import java.lang.ref.Reference;
-import java.lang.ref.ReferenceQueue;
-import java.lang.ref.SoftReference;
 import java.util.Iterator;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.scilab.forge.jlatexmath.ParseException;
 import org.scilab.forge.jlatexmath.TeXFormula;
+import org.scilab.forge.jlatexmath.TeXFormulaCache;
 import org.scilab.forge.jlatexmath.TeXIcon;
 
 /**
- * Class to cache generated image from formulas
+ * Class to cache generated image from formulas.
+ * The cache is bounded by a number of bytes (each entry is weighed by the size of its
+ * ARGB raster) and by a number of entries. When one of the bounds is exceeded, the least
+ * recently used images are evicted.
  * @author Calixte DENIZET
  */
 public final class JLaTeXMathCache {
 
+    /**
+     * Default size in bytes of the cache (32 MB)
+     */
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024L * 1024L;
+
     private static final AffineTransform identity = new AffineTransform();
-    private static ConcurrentMap<CachedTeXFormula, SoftReference<CachedImage>> cache = new ConcurrentHashMap<CachedTeXFormula, SoftReference<CachedImage>>(128);
+    private static final LinkedHashMap<CachedTeXFormula, CachedImage> cache = new LinkedHashMap<CachedTeXFormula, CachedImage>(128, 0.75f, true);
     private static int max = Integer.MAX_VALUE;
-    private static ReferenceQueue<CachedImage> queue = new ReferenceQueue<CachedImage>();
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+    private static long bytes = 0;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
 
     private JLaTeXMathCache() { }
 
@@ -80,9 +91,79 @@ public final class JLaTeXMathCache {
      * @param max the max size
      */
     public static void setMaxCachedObjects(int max) {
-        JLaTeXMathCache.max = Math.max(max, 1);
-        cache.clear();
-        cache = new ConcurrentHashMap<CachedTeXFormula, SoftReference<CachedImage>>(JLaTeXMathCache.max);
+        synchronized (cache) {
+            JLaTeXMathCache.max = Math.max(max, 1);
+            clear();
+        }
+    }
+
+    /**
+     * Set the max number of bytes used by the cached images. The least recently used
+     * images are evicted until the cache fits in the new budget.
+     * @param maxBytes the max number of bytes
+     */
+    public static void setMaxCachedBytes(long maxBytes) {
+        synchronized (cache) {
+            JLaTeXMathCache.maxBytes = Math.max(maxBytes, 0);
+            evict();
+        }
+    }
+
+    /**
+     * @return the max number of bytes used by the cached images
+     */
+    public static long getMaxCachedBytes() {
+        synchronized (cache) {
+            return maxBytes;
+        }
+    }
+
+    /**
+     * @return the number of bytes currently used by the cached images
+     */
+    public static long getCachedBytes() {
+        synchronized (cache) {
+            return bytes;
+        }
+    }
+
+    /**
+     * @return the number of cached images
+     */
+    public static int getCachedObjects() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * @return the number of requests which have found their image in the cache
+     */
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of requests which have needed to generate their image
+     */
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of images removed to keep the cache in its bounds
+     */
+    public static long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Reset the hit, miss and eviction counters
+     */
+    public static void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
     }
 
     /**
@@ -109,10 +190,7 @@ public final class JLaTeXMathCache {
             return new int[] {0, 0, 0};
         }
         CachedTeXFormula cached = (CachedTeXFormula) o;
-        SoftReference<CachedImage> img = cache.get(cached);
-        if (img == null || img.get() == null) {
-            img = makeImage(cached);
-        }
+        getImage(cached);
 
         return new int[] {cached.width, cached.height, cached.depth};
     }
@@ -127,10 +205,7 @@ public final class JLaTeXMathCache {
      */
     public static Object getCachedTeXFormula(String f, int style, int type, int size, int inset, Color fgcolor) throws ParseException  {
         CachedTeXFormula cached = new CachedTeXFormula(f, style, type, size, inset, fgcolor);
-        SoftReference<CachedImage> img = cache.get(cached);
-        if (img == null || img.get() == null) {
-            img = makeImage(cached);
-        }
+        getImage(cached);
 
         return cached;
     }
@@ -143,7 +218,9 @@ public final class JLaTeXMathCache {
      * Clear the cache
      */
     public static void clearCache() {
-        cache.clear();
+        synchronized (cache) {
+            clear();
+        }
     }
 
     /**
@@ -154,7 +231,7 @@ public final class JLaTeXMathCache {
      * @param inset the inset to add on the top, bottom, left and right
      */
     public static void removeCachedTeXFormula(String f, int style, int type, int size, int inset, Color fgcolor) throws ParseException  {
-        cache.remove(new CachedTeXFormula(f, style, type, size, inset, fgcolor));
+        remove(new CachedTeXFormula(f, style, type, size, inset, fgcolor));
     }
 
     public static void removeCachedTeXFormula(String f, int style, int size, int inset) throws ParseException  {
@@ -167,7 +244,7 @@ public final class JLaTeXMathCache {
      */
     public static void removeCachedTeXFormula(Object o) throws ParseException  {
         if (o != null && o instanceof CachedTeXFormula) {
-            cache.remove((CachedTeXFormula) o);
+            remove((CachedTeXFormula) o);
         }
     }
 
@@ -198,11 +275,7 @@ public final class JLaTeXMathCache {
             return null;
         }
         CachedTeXFormula cached = (CachedTeXFormula) o;
-        SoftReference<CachedImage> img = cache.get(cached);
-        if (img == null || img.get() == null) {
-            img = makeImage(cached);
-        }
-        g.drawImage(img.get().image, identity, null);
+        g.drawImage(getImage(cached).image, identity, null);
 
         return cached;
     }
@@ -232,71 +305,109 @@ public final class JLaTeXMathCache {
         if (o == null || !(o instanceof CachedTeXFormula)) {
             return null;
         }
-        CachedTeXFormula cached = (CachedTeXFormula) o;
-        SoftReference<CachedImage> img = cache.get(cached);
-        if (img == null || img.get() == null) {
+
+        return getImage((CachedTeXFormula) o).image;
+    }
+
+    private static CachedImage getImage(CachedTeXFormula cached) throws ParseException {
+        CachedImage img;
+        synchronized (cache) {
+            img = cache.get(cached);
+        }
+        if (img != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            // the image is generated outside of the lock: a concurrent request for the
+            // same formula can generate it twice but the other formulas are not blocked
             img = makeImage(cached);
+            synchronized (cache) {
+                CachedImage old = cache.put(img.cachedTf, img);
+                if (old != null) {
+                    bytes -= old.weight;
+                }
+                bytes += img.weight;
+                evict();
+            }
         }
+        cached.setDimensions(img.cachedTf.width, img.cachedTf.height, img.cachedTf.depth);
 
-        return img.get().image;
+        return img;
     }
 
-    private static SoftReference<CachedImage> makeImage(CachedTeXFormula cached) throws ParseException {
-        TeXFormula formula = new TeXFormula(cached.f);
+    private static CachedImage makeImage(CachedTeXFormula cached) throws ParseException {
+        TeXFormula formula = TeXFormulaCache.get(cached.f);
         TeXIcon icon = formula.createTeXIcon(cached.style, cached.size, cached.type, cached.fgcolor);
         icon.setInsets(new Insets(cached.inset, cached.inset, cached.inset, cached.inset));
         BufferedImage image = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
         Graphics2D g2 = image.createGraphics();
         icon.paintIcon(null, g2, 0, 0);
         g2.dispose();
-        cached.setDimensions(icon.getIconWidth(), icon.getIconHeight(), icon.getIconDepth());
-        SoftReference<CachedImage> img = new SoftReference<CachedImage>(new CachedImage(image, cached), queue);
-
-        if (cache.size() >= max) {
-            Reference<? extends CachedImage> soft;
-            while ((soft = queue.poll()) != null) {
-                CachedImage ci = (CachedImage) soft.get();
-                if (ci != null) {
-                    cache.remove(ci.cachedTf);
-                }
-            }
-            Iterator<CachedTeXFormula> iter = cache.keySet().iterator();
-            if (iter.hasNext()) {
-                CachedTeXFormula c = iter.next();
-                SoftReference<CachedImage> cachedImage = cache.get(c);
-                if (cachedImage != null) {
-                    cachedImage.clear();
-                }
-                cache.remove(c);
+
+        // the key stored in the map is a copy: the caller can modify its own key (e.g. when it
+        // gets the dimensions) without touching the map
+        CachedTeXFormula key = new CachedTeXFormula(cached.f, cached.style, cached.type, cached.size, cached.inset, cached.fgcolor);
+        key.setDimensions(icon.getIconWidth(), icon.getIconHeight(), icon.getIconDepth());
+
+        return new CachedImage(image, key);
+    }
+
+    /**
+     * Remove the least recently used images until the cache fits in its bounds.
+     * Must be called with the lock on cache.
+     */
+    private static void evict() {
+        Iterator<CachedImage> iter = cache.values().iterator();
+        while ((bytes > maxBytes || cache.size() > max) && iter.hasNext()) {
+            CachedImage img = iter.next();
+            iter.remove();
+            bytes -= img.weight;
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static void remove(CachedTeXFormula cached) {
+        synchronized (cache) {
+            CachedImage img = cache.remove(cached);
+            if (img != null) {
+                bytes -= img.weight;
             }
         }
-        cache.put(cached, img);
+    }
 
-        return img;
+    /**
+     * Must be called with the lock on cache.
+     */
+    private static void clear() {
+        cache.clear();
+        bytes = 0;
     }
 
     private static class CachedImage {
 
-        Image image;
-        CachedTeXFormula cachedTf;
+        final BufferedImage image;
+        final CachedTeXFormula cachedTf;
+        final long weight;
 
-        CachedImage(Image image, CachedTeXFormula cachedTf) {
+        CachedImage(BufferedImage image, CachedTeXFormula cachedTf) {
             this.image = image;
             this.cachedTf = cachedTf;
+            // an ARGB pixel is stored in an int
+            this.weight = 4L * image.getWidth() * image.getHeight();
         }
     }
 
     private static class CachedTeXFormula {
 
-        String f;
-        int style;
-        int type;
-        int size;
-        int inset;
+        final String f;
+        final int style;
+        final int type;
+        final int size;
+        final int inset;
+        final Color fgcolor;
         int width = -1;
         int height;
         int depth;
-        Color fgcolor;
 
         CachedTeXFormula(String f, int style, int type, int size, int inset, Color fgcolor) {
             this.f = f;
@@ -319,20 +430,8 @@ public final class JLaTeXMathCache {
         public boolean equals(Object o) {
             if (o != null && o instanceof CachedTeXFormula) {
                 CachedTeXFormula c = (CachedTeXFormula) o;
-                boolean b = (c.f.equals(f) && c.style == style && c.type == type && c.size == size && c.inset == inset && c.fgcolor.equals(fgcolor));
-                if (b) {
-                    if (c.width == -1) {
-                        c.width = width;
-                        c.height = height;
-                        c.depth = depth;
-                    } else if (width == -1) {
-                        width = c.width;
-                        height = c.height;
-                        depth = c.depth;
-                    }
-                }
-
-                return b;
+                return c.f.equals(f) && c.style == style && c.type == type && c.size == size && c.inset == inset
+                       && (c.fgcolor == null ? fgcolor == null : c.fgcolor.equals(fgcolor));
             }
 
             return false;
@@ -342,7 +441,14 @@ public final class JLaTeXMathCache {
          * {@inheritDoc}
          */
         public int hashCode() {
-            return f.hashCode();
+            int h = f.hashCode();
+            h = 31 * h + style;
+            h = 31 * h + type;
+            h = 31 * h + size;
+            h = 31 * h + inset;
+            h = 31 * h + (fgcolor == null ? 0 : fgcolor.hashCode());
+
+            return h;
         }
     }
 }
@@ -0,0 +1,171 @@
+/* BatchRendererTest.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class BatchRendererTest {
+
+    private static final long TIMEOUT = 60;
+
+    private static RenderRequest request(String latex, float size) {
+        return new RenderRequest(latex, TeXConstants.STYLE_DISPLAY, size);
+    }
+
+    private static Throwable getError(Future<BufferedImage> future) throws Exception {
+        try {
+            future.get(TIMEOUT, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("the future should have failed");
+        return null;
+    }
+
+    private static void checkImages(List<Future<BufferedImage>> futures) throws Exception {
+        for (Future<BufferedImage> f : futures) {
+            BufferedImage image = f.get(TIMEOUT, TimeUnit.SECONDS);
+            assertTrue(image.getWidth() > 0 && image.getHeight() > 0);
+        }
+    }
+
+    /**
+     * An executor running the first task in a new thread and rejecting the other ones
+     */
+    private static final class OneShotExecutor extends AbstractExecutorService {
+
+        private boolean used;
+
+        public synchronized void execute(Runnable task) {
+            if (used) {
+                throw new RejectedExecutionException();
+            }
+            used = true;
+            new Thread(task).start();
+        }
+
+        public void shutdown() { }
+
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        public boolean isShutdown() {
+            return used;
+        }
+
+        public boolean isTerminated() {
+            return used;
+        }
+
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+    @Test
+    public void testParseErrors() throws Exception {
+        final StringBuilder deep = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            deep.append('{');
+        }
+        deep.append('x');
+        for (int i = 0; i < 20000; i++) {
+            deep.append('}');
+        }
+        final BatchRenderer renderer = new BatchRenderer(2);
+        try {
+            final List<Future<BufferedImage>> futures = renderer.render(Arrays.asList(
+                    request("\\batchundefined", 20), request("\\batchundefined", 30), request(deep.toString(), 20),
+                    request(deep.toString(), 30), request("a+b", 20)));
+            assertTrue(getError(futures.get(0)) instanceof ParseException);
+            assertTrue(getError(futures.get(1)) instanceof ParseException);
+            assertTrue(getError(futures.get(2)) instanceof StackOverflowError);
+            assertTrue(getError(futures.get(3)) instanceof StackOverflowError);
+            checkImages(futures.subList(4, 5));
+        } finally {
+            renderer.shutdown();
+        }
+    }
+
+    @Test
+    public void testShutDownExecutor() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        executor.shutdown();
+        final List<Future<BufferedImage>> futures = new BatchRenderer(executor).render(Arrays.asList(
+                request("a+b", 20), request("a+b", 30), request("\\sqrt{x}", 20)));
+        assertEquals(3, futures.size());
+        checkImages(futures);
+    }
+
+    @Test
+    public void testTasksRejectedBySource() throws Exception {
+        final List<RenderRequest> requests = new ArrayList<RenderRequest>();
+        for (int i = 0; i < 4; i++) {
+            // one source: the first task is run by the executor, which rejects the next ones
+            requests.add(request("\\int_0^1 x^2\\,dx", 20 + i));
+        }
+        final List<Future<BufferedImage>> futures = new BatchRenderer(new OneShotExecutor()).render(requests);
+        checkImages(futures);
+    }
+}
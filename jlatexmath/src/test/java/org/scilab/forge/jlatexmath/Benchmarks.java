@@ -4,17 +4,195 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Insets;
 import java.awt.image.BufferedImage;
-
-import javax.swing.JLabel;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import org.scilab.forge.jlatexmath.cache.JLaTeXMathCache;
 
+/**
+ * The stages are timed separately: parse (TeXParser), layout (Atom.createBox), paint
+ * (TeXIcon.paintIcon and the Rasterizer), the caches, BreakFormula and the loading of the
+ * library and its fonts. The sizes are swept with the parameters of the states and the
+ * real-world formulas are in corpus.txt (one formula by line) in the test resources.
+ * Run with: mvn -Pbenchmark verify, or select some benchmarks with a regexp: -Dexec.args=...
+ */
 @State(Scope.Benchmark)
 public class Benchmarks {
 
     private static final String LATEX_1 = createLatex1();
+    private static final String LATEX_LONG = createLatexLong();
+
+    private TeXEnvironment longEnv;
+    private Box longBox;
+    private TeXIcon icon1;
+
+    @Setup
+    public void setup() {
+        longEnv = new TeXEnvironment(TeXConstants.STYLE_TEXT, new DefaultTeXFont(20),
+                                     TeXConstants.UNIT_CM, 10);
+        longBox = new TeXFormula(LATEX_LONG).root.createBox(longEnv);
+        icon1 = new TeXFormula(LATEX_1).createTeXIcon(TeXConstants.STYLE_DISPLAY, 20);
+        icon1.setInsets(new Insets(5, 5, 5, 5));
+    }
+
+    @State(Scope.Benchmark)
+    public static class Nested {
+
+        @Param({"10", "100", "400"})
+        public int depth;
+
+        private String latex;
+
+        private TeXFormula formula;
+
+        @Setup
+        public void setup() {
+            latex = createNested(depth);
+            formula = new TeXFormula(latex);
+        }
+    }
+
+    /**
+     * A sum of terms with scripts and fractions
+     */
+    @State(Scope.Benchmark)
+    public static class Sized {
+
+        @Param({"10", "100", "1000"})
+        public int terms;
+
+        private String latex;
+        private TeXFormula formula;
+        private TeXIcon icon;
+        private BufferedImage image;
+
+        @Setup
+        public void setup() {
+            StringBuilder buf = new StringBuilder();
+            for (int i = 0; i < terms; i++) {
+                buf.append(i % 3 == 0 ? "\\frac{x_{" : "x_{").append(i).append("}^{2}");
+                buf.append(i % 3 == 0 ? "}{y}+" : "+");
+            }
+            latex = buf.append("1").toString();
+            formula = new TeXFormula(latex);
+            icon = formula.createTeXIcon(TeXConstants.STYLE_DISPLAY, 20);
+            image = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+        }
+    }
+
+    /**
+     * A n x n pmatrix
+     */
+    @State(Scope.Benchmark)
+    public static class Matrix {
+
+        @Param({"2", "8", "32"})
+        public int n;
+
+        private String latex;
+        private TeXFormula formula;
+
+        @Setup
+        public void setup() {
+            StringBuilder buf = new StringBuilder("\\begin{pmatrix}");
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    buf.append(j == 0 ? "" : "&").append("a_{").append(i).append(j).append("}");
+                }
+                buf.append("\\\\");
+            }
+            latex = buf.append("\\end{pmatrix}").toString();
+            formula = new TeXFormula(latex);
+        }
+    }
+
+    /**
+     * The formulas of corpus.txt, parsed and laid out
+     */
+    @State(Scope.Benchmark)
+    public static class Corpus {
+
+        private String[] latex;
+        private TeXFormula[] formulas;
+        private TeXIcon[] icons;
+        private BufferedImage image;
+
+        @Setup
+        public void setup() throws IOException {
+            List<String> list = readCorpus();
+            latex = list.toArray(new String[list.size()]);
+            formulas = new TeXFormula[latex.length];
+            icons = new TeXIcon[latex.length];
+            int w = 1, h = 1;
+            for (int i = 0; i < latex.length; i++) {
+                formulas[i] = new TeXFormula(latex[i]);
+                icons[i] = formulas[i].createTeXIcon(TeXConstants.STYLE_DISPLAY, 20);
+                w = Math.max(w, icons[i].getIconWidth());
+                h = Math.max(h, icons[i].getIconHeight());
+            }
+            image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        }
+    }
+
+    /**
+     * The corpus rendered by a BatchRenderer with a given number of threads
+     */
+    @State(Scope.Benchmark)
+    public static class Batch {
+
+        @Param({"1", "2", "4", "8"})
+        public int threads;
+
+        private BatchRenderer renderer;
+        private List<RenderRequest> requests;
+
+        @Setup
+        public void setup() throws IOException {
+            renderer = new BatchRenderer(threads);
+            requests = new ArrayList<RenderRequest>();
+            for (String latex : readCorpus()) {
+                requests.add(new RenderRequest(latex, TeXConstants.STYLE_DISPLAY, 20));
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            renderer.shutdown();
+        }
+    }
+
+    /**
+     * Distinct formulas for the cache misses
+     */
+    @State(Scope.Thread)
+    public static class Counter {
+
+        private int n;
+
+        String next() {
+            return "x_{" + (n++) + "}+\\frac{a}{b}";
+        }
+    }
 
     @Benchmark
     public BufferedImage parseAndRenderLatex() {
@@ -22,19 +200,212 @@ public class Benchmarks {
         TeXIcon icon = formula.new TeXIconBuilder().setStyle(TeXConstants.STYLE_DISPLAY).setSize(20)
                        .build();
         icon.setInsets(new Insets(5, 5, 5, 5));
+        icon.setForeground(Color.BLACK);
 
         BufferedImage image = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(),
                                                 BufferedImage.TYPE_INT_ARGB);
         Graphics2D g2 = image.createGraphics();
         g2.setColor(Color.white);
         g2.fillRect(0, 0, icon.getIconWidth(), icon.getIconHeight());
-        JLabel jl = new JLabel();
-        jl.setForeground(new Color(0, 0, 0));
-        icon.paintIcon(jl, g2, 0, 0);
+        icon.paintIcon(null, g2, 0, 0);
+        g2.dispose();
         // must return the image to avoid dead code elimination
         return image;
     }
 
+    @Benchmark
+    public TeXFormula[] parseCorpus(Corpus corpus) {
+        TeXFormula[] formulas = new TeXFormula[corpus.latex.length];
+        for (int i = 0; i < formulas.length; i++) {
+            formulas[i] = new TeXFormula(corpus.latex[i]);
+        }
+        return formulas;
+    }
+
+    @Benchmark
+    public Box[] layoutCorpus(Corpus corpus) {
+        Box[] boxes = new Box[corpus.formulas.length];
+        for (int i = 0; i < boxes.length; i++) {
+            TeXEnvironment env = new TeXEnvironment(TeXConstants.STYLE_DISPLAY, new DefaultTeXFont(20));
+            boxes[i] = corpus.formulas[i].root.createBox(env);
+        }
+        return boxes;
+    }
+
+    @Benchmark
+    public BufferedImage paintCorpus(Corpus corpus) {
+        Graphics2D g2 = corpus.image.createGraphics();
+        for (TeXIcon icon : corpus.icons) {
+            icon.paintIcon(null, g2, 0, 0);
+        }
+        g2.dispose();
+        return corpus.image;
+    }
+
+    @Benchmark
+    public BufferedImage rasterizeCorpus(Corpus corpus) {
+        for (TeXIcon icon : corpus.icons) {
+            Rasterizer.paint(icon, corpus.image, 0, 0);
+        }
+        return corpus.image;
+    }
+
+    @Benchmark
+    public TeXFormula parseSized(Sized sized) {
+        return new TeXFormula(sized.latex);
+    }
+
+    @Benchmark
+    public Box layoutSized(Sized sized) {
+        TeXEnvironment env = new TeXEnvironment(TeXConstants.STYLE_DISPLAY, new DefaultTeXFont(20));
+        return sized.formula.root.createBox(env);
+    }
+
+    @Benchmark
+    public BufferedImage paintSized(Sized sized) {
+        Graphics2D g2 = sized.image.createGraphics();
+        sized.icon.paintIcon(null, g2, 0, 0);
+        g2.dispose();
+        return sized.image;
+    }
+
+    @Benchmark
+    public TeXFormula parseMatrix(Matrix matrix) {
+        return new TeXFormula(matrix.latex);
+    }
+
+    @Benchmark
+    public Box layoutMatrix(Matrix matrix) {
+        TeXEnvironment env = new TeXEnvironment(TeXConstants.STYLE_DISPLAY, new DefaultTeXFont(20));
+        return matrix.formula.root.createBox(env);
+    }
+
+    @Benchmark
+    public Object cacheHit() {
+        return JLaTeXMathCache.getCachedTeXFormulaImage(LATEX_1, TeXConstants.STYLE_DISPLAY, 20, 5);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object cacheHitContended() {
+        return JLaTeXMathCache.getCachedTeXFormulaImage(LATEX_1, TeXConstants.STYLE_DISPLAY, 20, 5);
+    }
+
+    @Benchmark
+    public Object cacheMiss(Counter counter) {
+        return JLaTeXMathCache.getCachedTeXFormulaImage(counter.next(), TeXConstants.STYLE_DISPLAY, 20, 5);
+    }
+
+    @Benchmark
+    public TeXFormula formulaCacheHit() {
+        return TeXFormulaCache.get(LATEX_1);
+    }
+
+    @Benchmark
+    public TeXFormula formulaCacheMiss(Counter counter) {
+        return TeXFormulaCache.get(counter.next());
+    }
+
+    @Benchmark
+    public int renderBatch(Batch batch) throws InterruptedException, ExecutionException {
+        int pixels = 0;
+        for (Future<BufferedImage> f : batch.renderer.render(batch.requests)) {
+            pixels += f.get().getWidth();
+        }
+        return pixels;
+    }
+
+    /**
+     * The library is loaded in a new class loader: the time includes the static initializers,
+     * the reading of the font descriptions and the loading of the fonts used by the formula.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public Object coldStart() throws Exception {
+        // the classes and the resources are not in the same directory when run from an IDE
+        URL classes = TeXFormula.class.getProtectionDomain().getCodeSource().getLocation();
+        String name = "org/scilab/forge/jlatexmath/TeXFormulaSettings.xml";
+        String res = TeXFormula.class.getResource("/" + name).toString();
+        URL resources = new URL(res.substring(0, res.length() - name.length()));
+        URLClassLoader loader = new URLClassLoader(new URL[] {classes, resources}, ClassLoader.getSystemClassLoader().getParent());
+        try {
+            Class<?> cl = loader.loadClass(TeXFormula.class.getName());
+            Constructor<?> c = cl.getConstructor(String.class);
+            Method m = cl.getMethod("createTeXIcon", int.class, float.class);
+            return m.invoke(c.newInstance("\\int_0^\\infty e^{-x^2}\\,dx = \\frac{\\sqrt{\\pi}}{2}"), TeXConstants.STYLE_DISPLAY, 20f);
+        } finally {
+            loader.close();
+        }
+    }
+
+    @Benchmark
+    public BufferedImage paintWithJava2D() {
+        BufferedImage image = new BufferedImage(icon1.getIconWidth(), icon1.getIconHeight(),
+                                                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        icon1.paintIcon(null, g2, 0, 0);
+        g2.dispose();
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintWithRasterizer() {
+        return Rasterizer.createImage(icon1);
+    }
+
+    @Benchmark
+    public Box breakLongFormula() {
+        // the box is not modified by the split so it can be reused
+        return BreakFormula.split(longBox, longEnv.getTextwidth(), 5f);
+    }
+
+    @Benchmark
+    public TeXFormula parseNested(Nested nested) {
+        // the time per level must not depend on the depth
+        return new TeXFormula(nested.latex);
+    }
+
+    @Benchmark
+    public Box layoutNested(Nested nested) {
+        TeXEnvironment env = new TeXEnvironment(TeXConstants.STYLE_DISPLAY, new DefaultTeXFont(20));
+        return nested.formula.root.createBox(env);
+    }
+
+    private static List<String> readCorpus() throws IOException {
+        Reader reader = new InputStreamReader(Benchmarks.class.getResourceAsStream("/corpus.txt"), "UTF-8");
+        try {
+            List<String> list = new ArrayList<String>();
+            for (Iterator<String> it = DocumentRenderer.formulas(reader); it.hasNext();) {
+                list.add(it.next());
+            }
+            return list;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String createNested(int depth) {
+        StringBuilder latex = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            latex.append("\\frac{\\sqrt{x_").append(i % 10).append("+");
+        }
+        latex.append("1");
+        for (int i = 0; i < depth; i++) {
+            latex.append("}}{y}");
+        }
+        return latex.toString();
+    }
+
+    private static String createLatexLong() {
+        // about 10000 glyphs with a break position after each binary operator
+        StringBuilder latex = new StringBuilder();
+        for (int i = 0; i < 2500; i++) {
+            latex.append("x_{").append(i % 10).append("}+");
+        }
+        latex.append("1");
+        return latex.toString();
+    }
+
     private static String createLatex1() {
         // taken from Example2
         String latex = "\\begin{array}{l}";
@@ -0,0 +1,87 @@
+/* BreakFormulaTest.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BreakFormulaTest {
+
+    private static TeXIcon createIcon(String latex, float widthCm) {
+        return new TeXFormula(latex).createTeXIcon(TeXConstants.STYLE_DISPLAY, 20, TeXConstants.UNIT_CM, widthCm,
+                                                   TeXConstants.ALIGN_LEFT, TeXConstants.UNIT_EX, 1f);
+    }
+
+    private static int getUnbrokenHeight(String latex) {
+        return createIcon(latex, 1000f).getIconHeight();
+    }
+
+    @Test
+    public void testNoEmptyLineAfterTrailingBreak() {
+        // the only breaks are followed by boxes without width: no empty line must be added
+        String[] formulas = {"a \\equiv b \\pmod{n}",
+                             "a+b+c+d+e+f+g+h+i = \\overbrace{1 + 2 + \\cdots + n}^{n \\text{ terms}} + \\underset{x}{\\lim}"};
+        for (String latex : formulas) {
+            for (float width : new float[] {4f, 9f}) {
+                assertEquals(latex + " at " + width + "cm", getUnbrokenHeight(latex), createIcon(latex, width).getIconHeight());
+            }
+        }
+    }
+
+    @Test
+    public void testLongFormulaIsBroken() {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            buf.append("a_{").append(i).append("} + ");
+        }
+        buf.append("z");
+        String latex = buf.toString();
+        TeXIcon icon = createIcon(latex, 4f);
+        assertTrue(icon.getIconHeight() > 3 * getUnbrokenHeight(latex));
+    }
+}
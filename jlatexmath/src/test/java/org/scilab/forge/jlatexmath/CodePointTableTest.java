@@ -0,0 +1,132 @@
+/* CodePointTableTest.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class CodePointTableTest {
+
+    private static String[][] getPages(CodePointTable table) throws Exception {
+        Field f = CodePointTable.class.getDeclaredField("pages");
+        f.setAccessible(true);
+        return (String[][]) f.get(table);
+    }
+
+    private static Map<Integer, String> map(int codePoint, String value) {
+        Map<Integer, String> m = new HashMap<Integer, String>();
+        m.put(codePoint, value);
+        return m;
+    }
+
+    private static float getWidth(String latex) {
+        return new TeXFormula(latex).createTeXIcon(TeXConstants.STYLE_DISPLAY, 20).getTrueIconWidth();
+    }
+
+    @Test
+    public void testWithCopiesOnWrite() throws Exception {
+        Map<Integer, String> m = map('a', "alpha");
+        m.put(0x300, "grave");
+        CodePointTable table = CodePointTable.EMPTY.with(m);
+        CodePointTable other = table.with(map('b', "beta"));
+
+        assertEquals("alpha", table.get('a'));
+        assertNull(table.get('b'));
+        assertEquals("alpha", other.get('a'));
+        assertEquals("beta", other.get('b'));
+        assertEquals("grave", other.get(0x300));
+        assertNull(CodePointTable.EMPTY.get('a'));
+
+        String[][] pages = getPages(table);
+        String[][] otherPages = getPages(other);
+        // the modified page is copied, the other ones are shared
+        assertNotSame(pages[0], otherPages[0]);
+        assertSame(pages[3], otherPages[3]);
+        assertNull(otherPages[1]);
+        assertSame(table, table.with(new HashMap<Integer, String>()));
+    }
+
+    @Test
+    public void testSupplementaryCodePoints() throws Exception {
+        CodePointTable table = CodePointTable.EMPTY.with(map(0x1D538, "A"));
+        assertEquals("A", table.get(0x1D538));
+        assertNull(table.get(0x1D539));
+        assertNull(table.get(0x10FFFF));
+        assertEquals(0x1D538 / 256 + 1, getPages(table).length);
+    }
+
+    @Test
+    public void testSupplementaryMappingInFormulas() throws Exception {
+        // the mappings are added to the global tables: they must not be seen by the other tests
+        ChildProcess.run(Mappings.class);
+    }
+
+    public static final class Mappings {
+
+        public static void main(String[] args) throws Exception {
+            final String xml = "<?xml version='1.0'?><TeXFormulaSettings><CharacterToSymbolMappings>"
+                + "<Map char=\"\uD83D\uDF01\" symbol=\"alpha\"/></CharacterToSymbolMappings><CharacterToFormulaMappings>"
+                + "<Map char=\"\uD83D\uDF02\" formula=\"\\mathbb{B}\"/></CharacterToFormulaMappings></TeXFormulaSettings>";
+            TeXFormula.addSymbolMappings(new ByteArrayInputStream(xml.getBytes("UTF-8")), "CodePointTableTest");
+
+            assertEquals("alpha", TeXFormula.getSymbolMapping(0x1F701));
+            assertEquals("\\mathbb{B}", TeXFormula.getSymbolFormulaMapping(0x1F702));
+            final float alpha = getWidth("\\alpha");
+            assertEquals(alpha, getWidth("\uD83D\uDF01"), 1e-3);
+            assertEquals(alpha, getWidth("\\char{0x1F701}"), 1e-3);
+            assertEquals(getWidth("\\mathbb{B}"), getWidth("\uD83D\uDF02"), 1e-3);
+        }
+    }
+}
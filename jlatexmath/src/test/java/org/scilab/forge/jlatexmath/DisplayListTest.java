@@ -0,0 +1,145 @@
+/* DisplayListTest.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class DisplayListTest {
+
+    private static final int DX = 37;
+    private static final int DY = 23;
+
+    private static Object getList(TeXIcon icon) throws Exception {
+        Field f = TeXIcon.class.getDeclaredField("list");
+        f.setAccessible(true);
+        return f.get(icon);
+    }
+
+    private static BufferedImage paint(TeXIcon icon, int x, int y) {
+        BufferedImage image = new BufferedImage(icon.getIconWidth() + DX, icon.getIconHeight() + DY, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        icon.setForeground(Color.BLACK);
+        icon.paintIcon(null, g2, x, y);
+        g2.dispose();
+        return image;
+    }
+
+    private static int[] paintScaled(TeXIcon icon, int scale) {
+        BufferedImage image = new BufferedImage(scale * icon.getIconWidth(), scale * icon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.scale(scale, scale);
+        icon.paintIcon(null, g2, 0, 0);
+        g2.dispose();
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    @Test
+    public void testListIsReplayedAtAnotherPosition() throws Exception {
+        TeXIcon icon = new TeXFormula("\\frac{a^2+\\sqrt{b}}{\\int_0^1 f(x)\\,dx}").createTeXIcon(TeXConstants.STYLE_DISPLAY, 20);
+        BufferedImage first = paint(icon, 0, 0);
+        Object list = getList(icon);
+        BufferedImage second = paint(icon, DX, DY);
+        assertSame(list, getList(icon));
+
+        int different = 0;
+        for (int y = 0; y < icon.getIconHeight(); y++) {
+            for (int x = 0; x < icon.getIconWidth(); x++) {
+                int a = first.getRGB(x, y) >>> 24;
+                int b = second.getRGB(x + DX, y + DY) >>> 24;
+                if (Math.abs(a - b) > 8) {
+                    different++;
+                }
+            }
+        }
+        assertEquals(0, different);
+    }
+
+    @Test
+    public void testListIsPaintedBySeveralThreads() throws Exception {
+        // the glyph vectors are cached for one context: painting at two scales at the same time
+        // replaces them all the time
+        final TeXIcon icon = new TeXFormula("\\mathrm{abcdef} + \\mathit{uvwxyz} = \\sum_{ijk} \\mathbf{ABC}").createTeXIcon(TeXConstants.STYLE_DISPLAY, 20);
+        icon.setForeground(Color.BLACK);
+        final int[][] expected = { paintScaled(icon, 1), paintScaled(icon, 2) };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < 8; t++) {
+                final int offset = t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() {
+                        for (int i = 0; i < 50; i++) {
+                            int scale = 1 + (i + offset) % 2;
+                            assertArrayEquals(expected[scale - 1], paintScaled(icon, scale));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/* EditableTeXFormulaTest.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import org.junit.Test;
+
+public class EditableTeXFormulaTest {
+
+    // the successive sources typed in an editor
+    private static final String[] EDITS = {
+        "x",
+        "x^2",
+        "x^2+y",
+        "x^2+y^2",
+        "{x^2+y^2}",
+        "\\sqrt{x^2+y^2}",
+        "\\sqrt{x^2+y^2}=r",
+        "\\sqrt{x^2+y^2}=\\frac{r}{2}",
+        "\\sqrt{x^2+y^2}=\\frac{r+1}{2}",
+        "\\sqrt{x^2+y^2}=\\frac{r+1}{2}+\\sum_{i}a_i",
+        "\\sqrt{x^2+y^2}=\\frac{r+1}{2}+\\sum_{i=0}^{n}a_i",
+        "\\sqrt{x^2+z^2}=\\frac{r+1}{2}+\\sum_{i=0}^{n}a_i",
+        "\\sqrt{x^2+z^2}=\\frac{r+1}{3}+\\sum_{i=0}^{n}a_i",
+        "\\sqrt{x^2+z^2}=\\frac{r+1}{3}+\\sum_{i=0}^{n}{a_i}",
+        "\\sqrt{x^2+z^2}=\\frac{r+1}{3}+\\sum_{i=0}^{n}{a_i}^2",
+        "\\sqrt{x^2+z^2}=\\frac{r+1}{3}",
+        "\\sqrt{x^2}=\\frac{r+1}{3}",
+    };
+
+    private static BufferedImage paint(TeXIcon icon) {
+        BufferedImage image = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(Color.WHITE);
+        g2.fillRect(0, 0, image.getWidth(), image.getHeight());
+        icon.setForeground(Color.BLACK);
+        icon.paintIcon(null, g2, 0, 0);
+        g2.dispose();
+        return image;
+    }
+
+    private static int[] getPixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Replace the part of the source which differs between the previous source and the next one
+     */
+    private static Rectangle edit(EditableTeXFormula f, String next) throws ParseException {
+        final String prev = f.getLaTeX();
+        int start = 0;
+        while (start < prev.length() && start < next.length() && prev.charAt(start) == next.charAt(start)) {
+            start++;
+        }
+        int end = prev.length(), nextEnd = next.length();
+        while (end > start && nextEnd > start && prev.charAt(end - 1) == next.charAt(nextEnd - 1)) {
+            end--;
+            nextEnd--;
+        }
+        final Rectangle damage = f.replace(start, end, next.substring(start, nextEnd));
+        assertEquals(next, f.getLaTeX());
+        return damage;
+    }
+
+    @Test
+    public void testEditsGiveTheSameIcon() throws ParseException {
+        final EditableTeXFormula f = new EditableTeXFormula(EDITS[0], TeXConstants.STYLE_DISPLAY, 20);
+        for (String latex : EDITS) {
+            edit(f, latex);
+            final BufferedImage expected = paint(new TeXFormula(latex).createTeXIcon(TeXConstants.STYLE_DISPLAY, 20));
+            final BufferedImage actual = paint(f.getIcon());
+            assertEquals(latex, expected.getWidth(), actual.getWidth());
+            assertEquals(latex, expected.getHeight(), actual.getHeight());
+            assertArrayEquals(latex, getPixels(expected), getPixels(actual));
+        }
+        assertTrue(f.getReusedGroups() > 0);
+    }
+
+    @Test
+    public void testDamageCoversTheChangedPixels() throws ParseException {
+        final EditableTeXFormula f = new EditableTeXFormula(EDITS[0], TeXConstants.STYLE_DISPLAY, 20);
+        BufferedImage previous = paint(f.getIcon());
+        for (String latex : EDITS) {
+            final Rectangle damage = edit(f, latex);
+            final BufferedImage image = paint(f.getIcon());
+            final int w = Math.min(previous.getWidth(), image.getWidth());
+            final int h = Math.min(previous.getHeight(), image.getHeight());
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    if (previous.getRGB(x, y) != image.getRGB(x, y)) {
+                        assertTrue(latex + ": (" + x + ", " + y + ") not in " + damage, damage.contains(x, y));
+                    }
+                }
+            }
+            previous = image;
+        }
+    }
+
+    @Test
+    public void testNoOpEdit() throws ParseException {
+        final EditableTeXFormula f = new EditableTeXFormula(EDITS[EDITS.length - 1], TeXConstants.STYLE_DISPLAY, 20);
+        assertTrue(f.replace(0, 0, "").isEmpty());
+        assertTrue(f.setLaTeX(f.getLaTeX()).isEmpty());
+        assertTrue(f.replace(3, 5, f.getLaTeX().substring(3, 5)).isEmpty());
+    }
+}
@@ -0,0 +1,143 @@
+/* ParseBufferTest.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Field;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ParseBufferTest {
+
+    private static Object getTable(ParseBuffer buf, String name) throws Exception {
+        Field f = ParseBuffer.class.getDeclaredField(name);
+        f.setAccessible(true);
+        return f.get(buf);
+    }
+
+    // the index of the closing delimiter found by scanning the string
+    private static int close(String s, int start, char open, char close) {
+        int group = 0;
+        for (int i = start; i < s.length(); i++) {
+            final char ch = s.charAt(i);
+            if (ch == open) {
+                group++;
+            } else if (ch == close) {
+                if (--group == 0) {
+                    return i;
+                }
+            } else if (ch == '\\') {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    private static void checkGroups(ParseBuffer buf) {
+        final String s = buf.toString();
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '{' && (i == 0 || s.charAt(i - 1) != '\\')) {
+                assertEquals("{ at " + i + " in " + s, close(s, i, '{', '}'), buf.findClose(i, '{', '}'));
+            } else if (s.charAt(i) == '[' && (i == 0 || s.charAt(i - 1) != '\\')) {
+                assertEquals("[ at " + i + " in " + s, close(s, i, '[', ']'), buf.findClose(i, '[', ']'));
+            }
+        }
+    }
+
+    @Test
+    public void testFindClose() {
+        final String s = "{a{b\\}c}[d]}{\\{e}{f[g{h]}]}{";
+        ParseBuffer buf = new ParseBuffer(s);
+        // the first group covers a large part of the text: the tables are built after it
+        assertEquals(11, buf.findClose(0, '{', '}'));
+        checkGroups(buf);
+        checkGroups(buf);
+        assertEquals(-1, buf.findClose(s.length() - 1, '{', '}'));
+    }
+
+    @Test
+    public void testSubBufferSharesTables() throws Exception {
+        final String s = "{x[y{z}w}v]";
+        ParseBuffer buf = new ParseBuffer(s);
+        assertEquals(8, buf.findClose(0, '{', '}'));
+        assertEquals(10, buf.findClose(2, '[', ']'));
+        final ParseBuffer sub = buf.sub(buf.group(1, 8));
+        assertEquals("x[y{z}w", sub.toString());
+        assertNotNull(getTable(buf, "braces"));
+        assertSame(getTable(buf, "braces"), getTable(sub, "braces"));
+        assertSame(getTable(buf, "brackets"), getTable(sub, "brackets"));
+        // in the shared table, the [ is closed after the end of the group
+        assertEquals(-1, sub.findClose(1, '[', ']'));
+        assertEquals(5, sub.findClose(3, '{', '}'));
+    }
+
+    @Test
+    public void testEdits() {
+        final Random random = new Random(42);
+        final String[] inserts = {"", "a", "{b}", "\\{", "[c]{d", "}", "{e[f]g}h", "\\frac{1}{2}"};
+        final StringBuilder expected = new StringBuilder("{x^{2}+[y]}\\sqrt{z}");
+        final ParseBuffer buf = new ParseBuffer(expected.toString());
+        for (int i = 0; i < 500; i++) {
+            final int start = random.nextInt(expected.length() + 1);
+            final int end = start + random.nextInt(Math.min(4, expected.length() - start) + 1);
+            final String str = inserts[random.nextInt(inserts.length)];
+            expected.replace(start, end, str);
+            buf.replace(start, end, str);
+            assertEquals(expected.toString(), buf.toString());
+            assertEquals(expected.length(), buf.length());
+            final int a = random.nextInt(expected.length() + 1);
+            final int b = a + random.nextInt(expected.length() - a + 1);
+            assertEquals(expected.substring(a, b), buf.substring(a, b));
+            if (i % 10 == 0) {
+                checkGroups(buf);
+            }
+        }
+    }
+}
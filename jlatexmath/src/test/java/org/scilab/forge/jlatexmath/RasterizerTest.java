@@ -0,0 +1,107 @@
+/* RasterizerTest.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+import org.scilab.forge.jlatexmath.internal.util.Images;
+
+public class RasterizerTest {
+
+    private static final String[] FORMULAS = {
+        "x^2 + y^2 = z^2",
+        "\\frac{a+b}{\\sqrt{c^2 + d^2}} \\leq \\sum_{i=0}^{n} \\int_0^1 f_i(x)\\,dx",
+        "\\begin{pmatrix} a & b \\\\ c & d \\end{pmatrix} \\overline{AB} \\underline{xy}",
+        "\\textcolor{red}{\\alpha} + \\colorbox{yellow}{\\beta} + \\text{some text}",
+        "\\rotatebox{30}{ABC} \\scalebox{2}{x} \\fbox{\\gamma}",
+    };
+
+    private static BufferedImage createImage(TeXIcon icon) {
+        BufferedImage image = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(Color.WHITE);
+        g2.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g2.dispose();
+        return image;
+    }
+
+    private static void check(String latex, float size) {
+        TeXIcon icon = new TeXFormula(latex).createTeXIcon(TeXConstants.STYLE_DISPLAY, size);
+        icon.setInsets(new Insets(3, 3, 3, 3));
+        icon.setForeground(Color.BLACK);
+
+        // Images.distance ignores the alpha channel: the icons are painted on an opaque background
+        BufferedImage a = createImage(icon);
+        Graphics2D g2 = a.createGraphics();
+        icon.paintIcon(null, g2, 0, 0);
+        g2.dispose();
+        BufferedImage b = createImage(icon);
+        Rasterizer.paint(icon, b, 0, 0);
+
+        double distance = Images.distance(a, b);
+        System.out.println(latex + " at " + size + ": distance=" + distance);
+        double THRESHOLD = Images.DISTANCE_THRESHOLD;
+        assertTrue("paintIcon and Rasterizer images for " + latex + " are different sizes!", distance >= 0);
+        assertTrue(
+            "distance=" + distance + " is above threshold=" + THRESHOLD
+            + ", images are probably significantly different for " + latex,
+            distance <= THRESHOLD);
+    }
+
+    @Test
+    public void testSameAsPaintIcon() {
+        for (String latex : FORMULAS) {
+            check(latex, 20);
+            check(latex, 37.5f);
+        }
+    }
+}
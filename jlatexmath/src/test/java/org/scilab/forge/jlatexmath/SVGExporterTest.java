@@ -0,0 +1,128 @@
+/* SVGExporterTest.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Insets;
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class SVGExporterTest {
+
+    private static final String SVG_NS = "http://www.w3.org/2000/svg";
+    private static final String XLINK_NS = "http://www.w3.org/1999/xlink";
+
+    private static TeXIcon createIcon(String latex) {
+        TeXIcon icon = new TeXFormula(latex).createTeXIcon(TeXConstants.STYLE_DISPLAY, 20);
+        icon.setInsets(new Insets(2, 3, 4, 5));
+        return icon;
+    }
+
+    private static Document parse(TeXIcon icon) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(SVGExporter.toSVG(icon).getBytes("UTF-8")));
+    }
+
+    @Test
+    public void testWellFormed() throws Exception {
+        TeXIcon icon = createIcon("\\textcolor{red}{\\frac{a}{b}} + \\sqrt{x} + \\fbox{y} + \\text{a < b \\& c}");
+        icon.setForeground(new Color(0, 0, 255, 128));
+        Element svg = parse(icon).getDocumentElement();
+        assertEquals(SVG_NS, svg.getNamespaceURI());
+        assertEquals("svg", svg.getLocalName());
+        assertTrue(svg.getElementsByTagNameNS(SVG_NS, "use").getLength() > 0);
+        assertTrue(svg.getElementsByTagNameNS(SVG_NS, "rect").getLength() > 0);
+        assertTrue(svg.getElementsByTagNameNS(SVG_NS, "image").getLength() > 0);
+    }
+
+    @Test
+    public void testGlyphsAreShared() throws Exception {
+        Element svg = parse(createIcon("x + x + x")).getDocumentElement();
+        NodeList defs = svg.getElementsByTagNameNS(SVG_NS, "defs");
+        assertEquals(1, defs.getLength());
+        NodeList paths = ((Element) defs.item(0)).getElementsByTagNameNS(SVG_NS, "path");
+        // one outline for x and one for +
+        assertEquals(2, paths.getLength());
+
+        Map<String, Integer> refs = new HashMap<String, Integer>();
+        NodeList uses = svg.getElementsByTagNameNS(SVG_NS, "use");
+        for (int i = 0; i < uses.getLength(); i++) {
+            String href = ((Element) uses.item(i)).getAttributeNS(XLINK_NS, "href");
+            Integer n = refs.get(href);
+            refs.put(href, n == null ? 1 : n + 1);
+        }
+        assertEquals(2, refs.size());
+        for (int i = 0; i < paths.getLength(); i++) {
+            String id = ((Element) paths.item(i)).getAttribute("id");
+            assertNotNull(refs.get("#" + id));
+        }
+        assertTrue(refs.values().contains(3));
+        assertTrue(refs.values().contains(2));
+    }
+
+    @Test
+    public void testDimensions() throws Exception {
+        TeXIcon icon = createIcon("\\int_0^1 f(x)\\,dx");
+        Element svg = parse(icon).getDocumentElement();
+        int w = icon.getIconWidth(), h = icon.getIconHeight();
+        assertEquals(Integer.toString(w), svg.getAttribute("width"));
+        assertEquals(Integer.toString(h), svg.getAttribute("height"));
+        assertEquals("0 0 " + w + " " + h, svg.getAttribute("viewBox"));
+    }
+}
@@ -0,0 +1,153 @@
+/* SnapshotTest.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException, ResourceParseException {
+        file = File.createTempFile("jlatexmath", ".snapshot");
+        Snapshot.write(file);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private File copy(int length) throws IOException {
+        final File copy = File.createTempFile("jlatexmath", ".snapshot");
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        final RandomAccessFile out = new RandomAccessFile(copy, "rw");
+        try {
+            final byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            out.write(bytes);
+        } finally {
+            in.close();
+            out.close();
+        }
+        return copy;
+    }
+
+    @Test
+    public void testValid() {
+        assertTrue(Snapshot.isValid(file));
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        final int length = (int) file.length();
+        for (int n : new int[] {0, 10, length / 2, length - 9211, length - 1}) {
+            final File truncated = copy(n);
+            try {
+                assertFalse("truncated at " + n, Snapshot.isValid(truncated));
+            } finally {
+                truncated.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testCorrupted() throws IOException {
+        final int length = (int) file.length();
+        for (int pos : new int[] {length / 2, length - 100, length - 1}) {
+            final File corrupted = copy(length);
+            try {
+                final RandomAccessFile raf = new RandomAccessFile(corrupted, "rw");
+                try {
+                    raf.seek(pos);
+                    final int b = raf.read();
+                    raf.seek(pos);
+                    raf.write(b ^ 0x5A);
+                } finally {
+                    raf.close();
+                }
+                assertFalse("corrupted at " + pos, Snapshot.isValid(corrupted));
+            } finally {
+                corrupted.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testTruncatedSnapshotIsIgnored() throws Exception {
+        // the snapshot is opened once by JVM when the library is initialized
+        final File truncated = copy((int) file.length() - 9211);
+        try {
+            final String output = ChildProcess.run(new String[] {"-D" + Snapshot.PROPERTY + "=" + truncated.getAbsolutePath()}, Render.class);
+            assertEquals(Render.render() + "\n", output);
+        } finally {
+            truncated.delete();
+        }
+    }
+
+    public static final class Render {
+
+        static String render() {
+            final TeXIcon icon = new TeXFormula("\\int_0^\\infty e^{-x^2}\\,dx = \\frac{\\sqrt{\\pi}}{2}").createTeXIcon(TeXConstants.STYLE_DISPLAY, 20);
+            return icon.getIconWidth() + "x" + icon.getIconHeight();
+        }
+
+        public static void main(String[] args) {
+            System.out.println(render());
+        }
+    }
+}
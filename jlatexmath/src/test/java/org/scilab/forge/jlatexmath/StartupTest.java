@@ -0,0 +1,167 @@
+/* StartupTest.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Startup loads the resources once per JVM: each case runs in a new JVM.
+ */
+public class StartupTest {
+
+    private static final String[] RESOURCES = {TeXFormulaSettingsParser.RESOURCE_NAME,
+                                               TeXSymbolParser.RESOURCE_NAME,
+                                               DefaultTeXFontParser.RESOURCE_NAME,
+                                               GlueSettingsParser.RESOURCE_NAME,
+                                               FontMetricsBundle.RESOURCE_NAME};
+
+    /**
+     * @return the number of lines of the report for each name
+     */
+    private static Map<String, Integer> count(String report) {
+        final Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (String line : report.split("\n")) {
+            final String name = line.trim().split("\\s+")[0];
+            final Integer n = counts.get(name);
+            counts.put(name, n == null ? 1 : n + 1);
+        }
+        return counts;
+    }
+
+    private static void checkParsedOnce(String report) {
+        final Map<String, Integer> counts = count(report);
+        for (String name : RESOURCES) {
+            assertEquals(report, Integer.valueOf(1), counts.get(name));
+        }
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        checkParsedOnce(ChildProcess.run(Child.class, "none"));
+        checkParsedOnce(ChildProcess.run(Child.class, "start"));
+    }
+
+    @Test
+    public void testRace() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            checkParsedOnce(ChildProcess.run(Child.class, "race"));
+        }
+    }
+
+    @Test
+    public void testThreads() throws Exception {
+        final String output = ChildProcess.run(new String[] {"-XX:ActiveProcessorCount=4"}, Child.class, "threads");
+        final String[] lines = output.split("\n");
+        assertEquals(output, "4", lines[0]);
+
+        final String report = output.substring(lines[0].length() + 1);
+        checkParsedOnce(report);
+        // nothing else needed the resources: all of them are loaded by the spare processors
+        final Set<String> threads = new HashSet<String>();
+        for (int i = 1; i < lines.length; i++) {
+            final String thread = lines[i].substring(lines[i].lastIndexOf(", ") + 2, lines[i].length() - 1);
+            assertTrue(lines[i], thread.startsWith("jlatexmath-startup-"));
+            threads.add(thread);
+        }
+        assertEquals(report, RESOURCES.length, lines.length - 1);
+        assertTrue(report, threads.size() <= 3);
+    }
+
+    public static final class Child {
+
+        private static void render() {
+            new TeXFormula("\\int_0^\\infty e^{-x^2}\\,dx = \\frac{\\sqrt{\\pi}}{2}").createTeXIcon(TeXConstants.STYLE_DISPLAY, 20);
+        }
+
+        public static void main(String[] args) throws Exception {
+            final String mode = args[0];
+            if ("start".equals(mode)) {
+                Startup.start();
+                Startup.start();
+                render();
+            } else if ("race".equals(mode)) {
+                // the class initializers and start are called at the same time
+                final CountDownLatch latch = new CountDownLatch(1);
+                final Thread thread = new Thread(new Runnable() {
+                    public void run() {
+                        try {
+                            latch.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        Startup.start();
+                    }
+                });
+                thread.start();
+                latch.countDown();
+                render();
+                thread.join();
+            } else if ("threads".equals(mode)) {
+                System.out.println(Runtime.getRuntime().availableProcessors());
+                Startup.start();
+                for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                    if (thread.getName().startsWith("jlatexmath-startup-")) {
+                        thread.join();
+                    }
+                }
+                System.out.print(Startup.getReport());
+                return;
+            } else {
+                render();
+            }
+            System.out.print(Startup.getReport());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/* TeXContextTest.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class TeXContextTest {
+
+    @Test
+    public void testDefinitionsStayInTheDerivedContext() throws ParseException {
+        final TeXContext context = TeXContext.getDefault().derive();
+        new TeXFormula("\\newcommand{\\ctxlocal}{x}\\definecolor{ctxcolor}{rgb}{1,0,0}", context);
+        assertNotNull(context.getMacroCode("ctxlocal"));
+        assertNotNull(context.getColor("ctxcolor"));
+        assertNotNull(context.derive().getMacroCode("ctxlocal"));
+        assertNull(TeXContext.getDefault().getMacroCode("ctxlocal"));
+        assertNull(TeXContext.getDefault().getColor("ctxcolor"));
+        assertNull(TeXContext.getDefault().derive().getMacroCode("ctxlocal"));
+    }
+
+    @Test
+    public void testFrozenContextRejectsDefinitions() throws ParseException {
+        final TeXContext context = TeXContext.getDefault().derive().freeze();
+        final long generation = context.getGeneration();
+        try {
+            new TeXFormula("\\newcommand{\\ctxfrozen}{x}", context);
+            fail("a definition in a frozen context must be rejected");
+        } catch (FrozenContextException e) {
+            // expected
+        }
+        try {
+            new TeXFormula("\\definecolor{ctxfrozencolor}{rgb}{1,0,0}", context);
+            fail("a definition in a frozen context must be rejected");
+        } catch (FrozenContextException e) {
+            // expected
+        }
+        assertNull(context.getMacroCode("ctxfrozen"));
+        assertNull(context.getColor("ctxfrozencolor"));
+        assertEquals(generation, context.getGeneration());
+    }
+
+    @Test
+    public void testGenerationIsScopedToTheContextChain() throws ParseException {
+        final TeXContext context = TeXContext.getDefault().derive();
+        final TeXContext child = context.derive();
+        final TeXContext sibling = TeXContext.getDefault().derive();
+        final long defaultGeneration = TeXContext.getDefault().getGeneration();
+        final long childGeneration = child.getGeneration();
+        final long siblingGeneration = sibling.getGeneration();
+        new TeXFormula("\\newcommand{\\ctxscoped}{x}", context);
+        assertNotEquals(childGeneration, child.getGeneration());
+        assertEquals(siblingGeneration, sibling.getGeneration());
+        assertEquals(defaultGeneration, TeXContext.getDefault().getGeneration());
+    }
+
+    @Test
+    public void testDocumentRendererKeepsDefinitionsLocal() throws ParseException {
+        final DocumentRenderer renderer = new DocumentRenderer("\\newcommand{\\ctxpreamble}{y}");
+        final long generation = renderer.getContext().getGeneration();
+        assertNotNull(renderer.parse("\\newcommand{\\ctxformula}{x}\\ctxformula + \\ctxpreamble"));
+        assertNotNull(renderer.parse("\\ctxpreamble"));
+        assertNull(renderer.getContext().getMacroCode("ctxformula"));
+        assertEquals(generation, renderer.getContext().getGeneration());
+    }
+}
@@ -0,0 +1,96 @@
+/* TeXFormulaCacheTest.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TeXFormulaCacheTest {
+
+    @Before
+    public void setUp() throws ParseException {
+        // the first parse loads the fonts and the predefined formulas, which changes the generation
+        new TeXFormula("a+b");
+        TeXFormulaCache.clearCache();
+        TeXFormulaCache.resetStatistics();
+    }
+
+    @Test
+    public void testDefinitionInAnotherContextKeepsTheEntries() throws ParseException {
+        final TeXContext context = TeXContext.getDefault().derive();
+        final TeXContext other = TeXContext.getDefault().derive();
+        TeXFormulaCache.get("a+b");
+        TeXFormulaCache.get("a+b", context);
+        new TeXFormula("\\newcommand{\\cachelocal}{x}", other);
+        TeXFormulaCache.get("a+b");
+        TeXFormulaCache.get("a+b", context);
+        assertEquals(2, TeXFormulaCache.getHitCount());
+        assertEquals(2, TeXFormulaCache.getMissCount());
+    }
+
+    @Test
+    public void testDefinitionInTheContextDropsItsEntries() throws ParseException {
+        final TeXContext context = TeXContext.getDefault().derive();
+        final TeXContext child = context.derive();
+        new TeXFormula("\\newcommand{\\cachedefined}{x}", context);
+        TeXFormulaCache.get("\\cachedefined", context);
+        TeXFormulaCache.get("\\cachedefined", child);
+        new TeXFormula("\\renewcommand{\\cachedefined}{y}", context);
+        TeXFormulaCache.get("\\cachedefined", context);
+        TeXFormulaCache.get("\\cachedefined", child);
+        assertEquals(0, TeXFormulaCache.getHitCount());
+        assertEquals(4, TeXFormulaCache.getMissCount());
+    }
+
+    @Test
+    public void testDefiningSourceIsNotCached() throws ParseException {
+        final TeXContext context = TeXContext.getDefault().derive();
+        TeXFormulaCache.get("\\newcommand{\\cachesource}{x}\\cachesource", context);
+        assertEquals(0, TeXFormulaCache.getCachedObjects());
+    }
+}
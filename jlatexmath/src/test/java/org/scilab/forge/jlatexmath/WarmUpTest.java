@@ -0,0 +1,86 @@
+/* WarmUpTest.java
+ * =========================================================================
+ * This file is part of the JLaTeXMath Library - http://forge.scilab.org/jlatexmath
+ *
+ * Copyright (C) 2026 JLaTeXMath contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ * Linking this library statically or dynamically with other modules
+ * is making a combined work based on this library. Thus, the terms
+ * and conditions of the GNU General Public License cover the whole
+ * combination.
+ *
+ * As a special exception, the copyright holders of this library give you
+ * permission to link this library with independent modules to produce
+ * an executable, regardless of the license terms of these independent
+ * modules, and to copy and distribute the resulting executable under terms
+ * of your choice, provided that you also meet, for each linked independent
+ * module, the terms and conditions of the license of that module.
+ * An independent module is a module which is not derived from or based
+ * on this library. If you modify this library, you may extend this exception
+ * to your version of the library, but you are not obliged to do so.
+ * If you do not wish to do so, delete this exception statement from your
+ * version.
+ *
+ */
+
+package org.scilab.forge.jlatexmath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * WarmUp initializes the library once per JVM: each case runs in a new JVM.
+ */
+public class WarmUpTest {
+
+    @Test
+    public void testWarmUp() throws Exception {
+        final String expected = ChildProcess.run(Child.class, "none");
+        assertEquals(expected, ChildProcess.run(Child.class, "warmup"));
+        assertTrue(expected, expected.endsWith("true true\n"));
+    }
+
+    public static final class Child {
+
+        public static void main(String[] args) throws Exception {
+            if ("warmup".equals(args[0])) {
+                final Future<Void> first = WarmUp.start();
+                final Future<Void> second = WarmUp.start(true);
+                first.get();
+                second.get();
+                WarmUp.run(false);
+                WarmUp.run(true);
+            }
+
+            // the Greek and Cyrillic alphabets are registered when they are used for the first time
+            final TeXIcon icon = new TeXFormula("\\text{\u03b1\u03b2\u03b3 \u0416\u0438\u0437\u043d\u044c} + \\sqrt{x}").createTeXIcon(TeXConstants.STYLE_DISPLAY, 20);
+            System.out.println(icon.getIconWidth() + "x" + icon.getIconHeight());
+            System.out.println(DefaultTeXFont.loadedAlphabets.contains(Character.UnicodeBlock.GREEK) + " "
+                               + DefaultTeXFont.loadedAlphabets.contains(Character.UnicodeBlock.CYRILLIC));
+        }
+    }
+}